@@ -0,0 +1,48 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GreekReverseStemmer#generateGreekVariants(String)} over
+ * the Greek tokens of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreekReverseStemmerBenchmark {
+
+	private String[] greekTokens;
+
+	private GreekReverseStemmer reverseStemmer;
+
+	@Setup
+	public void setUp() {
+		greekTokens = ProductTitleCorpus.greekTokens();
+		reverseStemmer = new GreekReverseStemmer();
+	}
+
+	@Benchmark
+	public int generateVariants(TokenCounters counters) {
+		int variants = 0;
+		for (String greekToken : greekTokens) {
+			variants += reverseStemmer.generateGreekVariants(greekToken).size();
+		}
+		counters.inputTokens += greekTokens.length;
+		counters.emittedTokens += variants;
+		return variants;
+	}
+}
@@ -0,0 +1,63 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the filter of each mode over the product title corpus, with the
+ * default settings, so the emitted tokens per second show how many terms
+ * each mode adds to the index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreeklishCanonicalTokenFilterBenchmark {
+
+	@Param({ "expand", "canonical" })
+	public String mode;
+
+	private ProductTitleCorpus.ReplayTokenStream input;
+
+	private GreeklishOptions options;
+
+	@Setup
+	public void setUp() {
+		input = new ProductTitleCorpus.ReplayTokenStream(ProductTitleCorpus.tokens());
+		options = GreeklishOptions.builder()
+				.mode(GreeklishOptions.Mode.fromString(mode))
+				.build();
+	}
+
+	@Benchmark
+	public int analyzeCorpus(TokenCounters counters) throws IOException {
+		TokenStream stream = options.getMode() == GreeklishOptions.Mode.CANONICAL
+				? new GreeklishCanonicalTokenFilter(input, options)
+				: new GreeklishTokenFilter(input, options);
+		int emitted = 0;
+		stream.reset();
+		while (stream.incrementToken()) {
+			emitted++;
+		}
+		stream.end();
+		stream.close();
+		counters.inputTokens += input.size();
+		counters.emittedTokens += emitted;
+		return emitted;
+	}
+}
@@ -0,0 +1,65 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GreeklishConverter#convert(char[], int)} over all the
+ * tokens of the corpus, Greek and non Greek ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreeklishConverterBenchmark {
+
+	@Param({ "5", "20", "50" })
+	public int maxExpansions;
+
+	@Param({ "true", "false" })
+	public boolean greekVariants;
+
+	private char[][] tokens;
+
+	@Setup
+	public void setUp() {
+		String[] corpus = ProductTitleCorpus.tokens();
+		tokens = new char[corpus.length][];
+		for (int i = 0; i < corpus.length; i++) {
+			tokens[i] = corpus[i].toCharArray();
+		}
+	}
+
+	/**
+	 * A new converter is created for every pass over the corpus, the same
+	 * way a new filter creates its own converter.
+	 */
+	@Benchmark
+	public int convertCorpus(TokenCounters counters) {
+		GreeklishConverter converter = new GreeklishConverter(maxExpansions, greekVariants);
+		int generated = 0;
+		for (char[] token : tokens) {
+			List<StringBuilder> greeklishWords = converter.convert(token, token.length);
+			if (greeklishWords != null) {
+				generated += greeklishWords.size();
+			}
+		}
+		counters.inputTokens += tokens.length;
+		counters.emittedTokens += generated;
+		return generated;
+	}
+}
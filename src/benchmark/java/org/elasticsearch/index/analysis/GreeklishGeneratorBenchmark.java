@@ -0,0 +1,68 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GreeklishGenerator#generateGreeklishWords(List)} for each
+ * Greek token of the corpus, alone or with its reverse stemmer variants,
+ * breadth first and weighted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreeklishGeneratorBenchmark {
+
+	@Param({ "5", "20", "50" })
+	public int maxExpansions;
+
+	@Param({ "false", "true" })
+	public boolean weighted;
+
+	@Param({ "false", "true" })
+	public boolean variants;
+
+	private List<List<String>> greekWords;
+
+	private GreeklishGenerator generator;
+
+	@Setup
+	public void setUp() {
+		greekWords = new ArrayList<List<String>>();
+		GreekReverseStemmer reverseStemmer = new GreekReverseStemmer();
+		for (String greekToken : ProductTitleCorpus.greekTokens()) {
+			greekWords.add(variants
+					? new ArrayList<String>(reverseStemmer.generateGreekVariants(greekToken))
+					: Collections.singletonList(greekToken));
+		}
+		generator = new GreeklishGenerator(maxExpansions, weighted ? GreeklishWeights.DEFAULT : null);
+	}
+
+	@Benchmark
+	public int generateGreeklish(TokenCounters counters) {
+		int generated = 0;
+		for (List<String> greekWord : greekWords) {
+			generated += generator.generateGreeklishWords(greekWord).size();
+		}
+		counters.inputTokens += greekWords.size();
+		counters.emittedTokens += generated;
+		return generated;
+	}
+}
@@ -0,0 +1,108 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.util.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the whole filter over the product title corpus.
+ * The primary score is corpus passes per second, the {@link TokenCounters}
+ * report input and emitted tokens per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreeklishTokenFilterBenchmark {
+
+	@Param({ "5", "20", "50" })
+	public int maxExpansions;
+
+	@Param({ "true", "false" })
+	public boolean greekVariants;
+
+	/**
+	 * Size of the node level expansion cache, 0 disables it.
+	 */
+	@Param({ "0", "10000" })
+	public int expansionCacheSize;
+
+	/**
+	 * Whether the greek words of the corpus are looked up in a precompiled
+	 * dictionary.
+	 */
+	@Param({ "false", "true" })
+	public boolean dictionary;
+
+	private ProductTitleCorpus.ReplayTokenStream input;
+
+	private GreeklishOptions options;
+
+	private Path dictionaryDirectory;
+
+	private GreeklishDictionary.Registry dictionaries;
+
+	@Setup
+	public void setUp() throws IOException {
+		input = new ProductTitleCorpus.ReplayTokenStream(ProductTitleCorpus.tokens());
+		GreeklishOptions.Builder builder = GreeklishOptions.builder()
+				.maxExpansions(maxExpansions)
+				.generateGreekVariants(greekVariants)
+				.expansionCache(new GreeklishExpansionCache.Registry().get(expansionCacheSize));
+		if (dictionary) {
+			dictionaryDirectory = Files.createTempDirectory("greeklish");
+			Path path = dictionaryDirectory.resolve("greeklish.dict");
+			GreeklishDictionaryBuilder.build(Arrays.asList(ProductTitleCorpus.greekTokens()),
+					builder.build(), path);
+			dictionaries = new GreeklishDictionary.Registry();
+			builder.dictionary(dictionaries.get(path));
+		}
+		options = builder.build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (dictionaries != null) {
+			dictionaries.close();
+			IOUtils.rm(dictionaryDirectory);
+		}
+	}
+
+	/**
+	 * A new filter is created for every pass over the corpus, the same way a
+	 * new analysis chain is created for a document.
+	 */
+	@Benchmark
+	public int analyzeCorpus(TokenCounters counters) throws IOException {
+		TokenStream stream = new GreeklishTokenFilter(input, options);
+		int emitted = 0;
+		stream.reset();
+		while (stream.incrementToken()) {
+			emitted++;
+		}
+		stream.end();
+		stream.close();
+		counters.inputTokens += input.size();
+		counters.emittedTokens += emitted;
+		return emitted;
+	}
+}
@@ -0,0 +1,95 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermFrequencyAttribute;
+import org.apache.lucene.util.Attribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares restoring the captured state of the Greek token for every
+ * generated token with setting only the term, type and position increment,
+ * on chains that carry more attributes than the filter itself uses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GreeklishTokenFilterStateBenchmark {
+
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Attribute>[] EXTRA_ATTRIBUTES = new Class[] {
+			FlagsAttribute.class, KeywordAttribute.class, PayloadAttribute.class,
+			PositionLengthAttribute.class, TermFrequencyAttribute.class };
+
+	@Param({ "true", "false" })
+	public boolean restoreState;
+
+	/**
+	 * Number of attributes that other filters of the chain add.
+	 */
+	@Param({ "0", "5" })
+	public int extraAttributes;
+
+	private ProductTitleCorpus.ReplayTokenStream input;
+
+	private GreeklishOptions options;
+
+	@Setup
+	public void setUp() {
+		input = new ProductTitleCorpus.ReplayTokenStream(ProductTitleCorpus.tokens());
+		options = GreeklishOptions.builder().restoreState(restoreState).build();
+	}
+
+	@Benchmark
+	public int analyzeCorpus(TokenCounters counters) throws IOException {
+		TokenStream stream = new GreeklishTokenFilter(new AttributeAddingFilter(input, extraAttributes),
+				options);
+		int emitted = 0;
+		stream.reset();
+		while (stream.incrementToken()) {
+			emitted++;
+		}
+		stream.end();
+		stream.close();
+		counters.inputTokens += input.size();
+		counters.emittedTokens += emitted;
+		return emitted;
+	}
+
+	/**
+	 * Stands for the filters of a chain that add their own attributes.
+	 */
+	private static final class AttributeAddingFilter extends TokenFilter {
+		AttributeAddingFilter(TokenStream input, int attributes) {
+			super(input);
+			for (int i = 0; i < attributes; i++) {
+				addAttribute(EXTRA_ATTRIBUTES[i]);
+			}
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			return input.incrementToken();
+		}
+	}
+}
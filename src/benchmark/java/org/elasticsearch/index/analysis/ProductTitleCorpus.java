@@ -0,0 +1,159 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+/**
+ * A corpus of Greek product titles used by the benchmarks.
+ * The titles are stored as they are typed by merchants (mixed case, accents,
+ * final sigma, brand names, SKUs and numbers). The tokens are normalized the
+ * way a Greek lowercase filter would do before they reach the greeklish
+ * filter.
+ */
+public final class ProductTitleCorpus {
+
+	private static final String RESOURCE = "/product-titles.txt";
+
+	private static final List<String> TITLES = load();
+
+	private ProductTitleCorpus() {
+	}
+
+	/**
+	 * @return the raw product titles
+	 */
+	public static List<String> titles() {
+		return TITLES;
+	}
+
+	/**
+	 * @return all the whitespace separated tokens of the corpus, normalized
+	 *         the way the Greek lowercase filter does.
+	 */
+	public static String[] tokens() {
+		List<String> tokens = new ArrayList<String>();
+		for (String title : TITLES) {
+			for (String token : title.split("\\s+")) {
+				if (!token.isEmpty()) {
+					tokens.add(normalize(token));
+				}
+			}
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * @return the tokens of the corpus that the greeklish filter converts
+	 */
+	public static String[] greekTokens() {
+		List<String> greekTokens = new ArrayList<String>();
+		for (String token : tokens()) {
+			if (isGreek(token)) {
+				greekTokens.add(token);
+			}
+		}
+		return greekTokens.toArray(new String[greekTokens.size()]);
+	}
+
+	/**
+	 * Lowercases, strips tonos/dialytika and replaces final sigma.
+	 */
+	static String normalize(String token) {
+		String lowercase = token.toLowerCase(new Locale("el"));
+		String stripped = Normalizer.normalize(lowercase, Normalizer.Form.NFD)
+				.replaceAll("\\p{Mn}", "");
+		return stripped.replace('ς', 'σ');
+	}
+
+	private static boolean isGreek(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (GreeklishConverter.GREEK_CHARACTERS.indexOf(token.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return !token.isEmpty();
+	}
+
+	private static List<String> load() {
+		List<String> titles = new ArrayList<String>();
+		try (InputStream in = ProductTitleCorpus.class.getResourceAsStream(RESOURCE);
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					titles.add(line.trim());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return Collections.unmodifiableList(titles);
+	}
+
+	/**
+	 * A token stream that replays a fixed array of tokens, so that the
+	 * benchmarks measure the greeklish filter and not a tokenizer.
+	 */
+	public static final class ReplayTokenStream extends TokenStream {
+		private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+		private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+		private final PositionIncrementAttribute posIncAttribute = addAttribute(PositionIncrementAttribute.class);
+		private final TypeAttribute typeAttribute = addAttribute(TypeAttribute.class);
+
+		private final char[][] tokens;
+		private int index;
+		private int offset;
+
+		public ReplayTokenStream(String[] tokens) {
+			this.tokens = new char[tokens.length][];
+			for (int i = 0; i < tokens.length; i++) {
+				this.tokens[i] = tokens[i].toCharArray();
+			}
+		}
+
+		@Override
+		public boolean incrementToken() {
+			if (index >= tokens.length) {
+				return false;
+			}
+			clearAttributes();
+			char[] token = tokens[index++];
+			termAttribute.copyBuffer(token, 0, token.length);
+			offsetAttribute.setOffset(offset, offset + token.length);
+			posIncAttribute.setPositionIncrement(1);
+			typeAttribute.setType(TypeAttribute.DEFAULT_TYPE);
+			offset += token.length + 1;
+			return true;
+		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			index = 0;
+			offset = 0;
+		}
+
+		/**
+		 * @return the number of tokens that this stream replays
+		 */
+		public int size() {
+			return tokens.length;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package org.elasticsearch.index.analysis;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results, reported by JMH as rates per second next to
+ * the primary score, i.e. input tokens/sec and emitted tokens/sec.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class TokenCounters {
+
+	/**
+	 * Tokens consumed from the input of the benchmarked component.
+	 */
+	public long inputTokens;
+
+	/**
+	 * Tokens produced by the benchmarked component.
+	 */
+	public long emittedTokens;
+
+	@Setup(Level.Iteration)
+	public void clear() {
+		inputTokens = 0;
+		emittedTokens = 0;
+	}
+}
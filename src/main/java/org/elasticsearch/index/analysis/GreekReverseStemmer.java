@@ -1,10 +1,9 @@
 package org.elasticsearch.index.analysis;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.Loggers;
 
@@ -45,16 +44,10 @@ public class GreekReverseStemmer {
 	private static final String SUFFIX_A = "α";
 	private static final String SUFFIX_I = "ι";
 
-	/**
-	 * This hash has as keys all the suffixes that we want to handle in order
-	 * to generate singular/plural greek words.
-	 */
-	private final Map<String, String[]> suffixes = new HashMap<String, String[]>();
-
 	/**
 	 * The possible suffix strings.
 	 */
-	private static final String[][] suffixStrings = new String[][] {
+	static final String[][] suffixStrings = new String[][] {
 		{SUFFIX_MATOS, "μα", "ματων", "ματα"},  // κουρεματος, ασυρματος
 		{SUFFIX_MATA, "μα", "ματων", "ματοσ"},  // ενδυματα
 		{SUFFIX_MATWN, "μα", "ματα", "ματοσ"},  // ασυρματων, ενδυματων
@@ -71,7 +64,7 @@ public class GreekReverseStemmer {
 		{SUFFIX_EIS, "η", "ησ", "εων"},  // συνδεσεις, τηλεορασεις
 		{SUFFIX_ES, "η", "ασ", "ων", "ησ", "α"},  // αλυσιδες
 		{SUFFIX_HS, "ων", "εσ", "η", "εων"},  // γυμναστικης, εκτυπωσης
-		{SUFFIX_WN, "οσ", "εσ", "α", "η", "ησ", "ου", "οι", "ο", "α"},  //  ινων, καπνιστων, καρτων, κατασκευων
+		{SUFFIX_WN, "οσ", "εσ", "α", "η", "ησ", "ου", "οι", "ο"},  //  ινων, καπνιστων, καρτων, κατασκευων
 		{SUFFIX_OY, "ων", "α", "ο", "οσ"},  // λαδιου, μοντελισμου, παιδικου
 		{SUFFIX_O, "α", "ου", "εων", "ων"},  // αυτοκινητο, δισκος
 		{SUFFIX_H, "οσ", "ουσ", "εων", "εισ", "ησ", "ων"},  //βελη, ψυξη, τηλεοραση, αποτριχωση
@@ -79,23 +72,51 @@ public class GreekReverseStemmer {
 		{SUFFIX_I, "ιου", "ια", "ιων"}  // γιαουρτι, γραναζι
 	};
 
+	/**
+	 * The suffixes that we want to handle in order to generate singular/plural
+	 * greek words, compiled once per set of rules in a trie of reversed
+	 * suffixes. The rows of suffixStrings are ordered so that the first
+	 * matching suffix is also the longest one, which is what the trie returns.
+	 */
+	private final GreekSuffixTrie suffixes;
+
+	/**
+	 * The reader of the lexicon that the variants must be in, or null if
+	 * all the variants are generated.
+	 */
+	private final GreeklishLexicon.Reader lexicon;
+
 	/**
 	 * The greek word list
 	 */
 	private List<String> greekWords = new ArrayList<String>();
 
+	/**
+	 * Buffer in which the variants are spliced. It is reused between the
+	 * tokens.
+	 */
+	private char[] variant = new char[0];
+
 	// Constructor
 	public GreekReverseStemmer() {
+		this(GreeklishRules.DEFAULT);
+	}
 
-		// populate suffixes
-		for (String[] suffix : suffixStrings) {
-			suffixes.put(suffix[0], Arrays.copyOfRange(suffix, 1, suffix.length));
-		}
+	// Constructor
+	public GreekReverseStemmer(GreeklishRules rules) {
+		this(rules, null);
+	}
+
+	// Constructor
+	public GreekReverseStemmer(GreeklishRules rules, GreeklishLexicon lexicon) {
+		this.suffixes = rules.suffixes();
+		this.lexicon = lexicon == null ? null : lexicon.reader();
 	}
 
 	/**
 	 * This method generates the greek variants of the greek token that
-	 * receives.
+	 * receives. With a lexicon, only the variants that are in it are kept,
+	 * while the token itself is always kept.
 	 *
 	 * @param tokenString the greek word
 	 * @return a list of the generated greek word variations
@@ -107,25 +128,72 @@ public class GreekReverseStemmer {
 		// add the initial greek token in the greek words
 		greekWords.add(tokenString);
 
-		// Find the first matching suffix and generate the
+		// Find the matching suffix and generate the
 		// the variants of this word
-		for (String[] suffix : suffixStrings) {
-			if (tokenString.endsWith(suffix[0])) {
-				// Add to greekWords the tokens with the desired suffixes
-				generate_more_greek_words(tokenString, suffix[0]);
-				break;
-			}
+		int length = tokenString.length();
+		if (variant.length < length) {
+			variant = new char[length];
+		}
+		tokenString.getChars(0, length, variant, 0);
+		int rule = suffixes.match(variant, length);
+		if (rule >= 0) {
+			// Add to greekWords the tokens with the desired suffixes
+			generate_more_greek_words(length - suffixes.suffixLength(rule), rule);
 		}
 		return greekWords;
 	}
 
 	/**
-	 * Generates more greek words based on the suffix of the original word
-	 * @param inputSuffix the suffix that matched
+	 * @param tokenString the greek word
+	 * @return the longest suffix of the word that has variants, or null if
+	 *         no suffix matches
+	 */
+	String matchSuffix(String tokenString) {
+		char[] word = tokenString.toCharArray();
+		int rule = suffixes.match(word, word.length);
+		if (rule < 0) {
+			return null;
+		}
+		return tokenString.substring(word.length - suffixes.suffixLength(rule));
+	}
+
+	/**
+	 * Forgets the variants of the last word, and drops the variant buffer if
+	 * a long word made it grow beyond the retained length.
 	 */
-	private void generate_more_greek_words(final String inputToken, final String inputSuffix) {
-		for (String suffix : suffixes.get(inputSuffix)) {
-			greekWords.add(inputToken.replaceAll(inputSuffix + "$", suffix));
+	void release() {
+		greekWords.clear();
+		if (variant.length > GreeklishGenerator.MAX_RETAINED_WORD_LENGTH) {
+			variant = new char[0];
+		}
+	}
+
+	/**
+	 * @return the memory used by the variant buffer, in bytes
+	 */
+	long ramBytesUsed() {
+		return RamUsageEstimator.sizeOf(variant);
+	}
+
+	/**
+	 * Generates more greek words based on the suffix of the original word.
+	 * The characters of the word are already in the variant buffer.
+	 * @param stemLength the length of the word without the matched suffix
+	 * @param rule the suffix rule that matched
+	 */
+	private void generate_more_greek_words(final int stemLength, final int rule) {
+		for (char[] suffix : suffixes.replacements(rule)) {
+			int length = stemLength + suffix.length;
+			if (variant.length < length) {
+				char[] grown = new char[length];
+				System.arraycopy(variant, 0, grown, 0, stemLength);
+				variant = grown;
+			}
+			System.arraycopy(suffix, 0, variant, stemLength, suffix.length);
+			// the forms that do not exist are not worth expanding
+			if (lexicon == null || lexicon.contains(variant, length)) {
+				greekWords.add(new String(variant, 0, length));
+			}
 		}
 	}
 }
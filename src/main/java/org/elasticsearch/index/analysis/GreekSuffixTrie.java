@@ -0,0 +1,151 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable trie of reversed suffixes. Each suffix is associated with
+ * the suffixes that replace it in order to generate the variants of a word.
+ * A word is matched by walking the trie from its last character to its first
+ * one, so the longest matching suffix is found in a single pass.
+ */
+final class GreekSuffixTrie {
+
+	private static final int NO_RULE = -1;
+
+	/**
+	 * The character of the edge that leads to each node.
+	 */
+	private final char[] labels;
+
+	/**
+	 * The first child of each node, or -1.
+	 */
+	private final int[] firstChild;
+
+	/**
+	 * The next sibling of each node, or -1.
+	 */
+	private final int[] nextSibling;
+
+	/**
+	 * The rule of the suffix that ends at each node, or -1.
+	 */
+	private final int[] rules;
+
+	/**
+	 * The length of the suffix of each rule.
+	 */
+	private final int[] suffixLengths;
+
+	/**
+	 * The replacement suffixes of each rule.
+	 */
+	private final char[][][] replacements;
+
+	/**
+	 * Builds the trie from rows whose first element is the suffix to be
+	 * matched and the rest are its replacements. If the same suffix appears
+	 * more than once, the first row wins.
+	 *
+	 * @param suffixStrings the suffix rules
+	 */
+	GreekSuffixTrie(String[][] suffixStrings) {
+		List<Character> labelList = new ArrayList<Character>();
+		List<Integer> childList = new ArrayList<Integer>();
+		List<Integer> siblingList = new ArrayList<Integer>();
+		List<Integer> ruleList = new ArrayList<Integer>();
+
+		// the root node
+		labelList.add('\0');
+		childList.add(NO_RULE);
+		siblingList.add(NO_RULE);
+		ruleList.add(NO_RULE);
+
+		suffixLengths = new int[suffixStrings.length];
+		replacements = new char[suffixStrings.length][][];
+
+		for (int rule = 0; rule < suffixStrings.length; rule++) {
+			String suffix = suffixStrings[rule][0];
+			int node = 0;
+			for (int i = suffix.length() - 1; i >= 0; i--) {
+				char c = suffix.charAt(i);
+				int child = childList.get(node);
+				while (child != NO_RULE && labelList.get(child) != c) {
+					child = siblingList.get(child);
+				}
+				if (child == NO_RULE) {
+					child = labelList.size();
+					labelList.add(c);
+					childList.add(NO_RULE);
+					siblingList.add(childList.get(node));
+					ruleList.add(NO_RULE);
+					childList.set(node, child);
+				}
+				node = child;
+			}
+			if (ruleList.get(node) == NO_RULE) {
+				ruleList.set(node, rule);
+			}
+
+			suffixLengths[rule] = suffix.length();
+			replacements[rule] = new char[suffixStrings[rule].length - 1][];
+			for (int i = 1; i < suffixStrings[rule].length; i++) {
+				replacements[rule][i - 1] = suffixStrings[rule][i].toCharArray();
+			}
+		}
+
+		int size = labelList.size();
+		labels = new char[size];
+		firstChild = new int[size];
+		nextSibling = new int[size];
+		rules = new int[size];
+		for (int i = 0; i < size; i++) {
+			labels[i] = labelList.get(i);
+			firstChild[i] = childList.get(i);
+			nextSibling[i] = siblingList.get(i);
+			rules[i] = ruleList.get(i);
+		}
+	}
+
+	/**
+	 * Finds the rule of the longest suffix of a word.
+	 *
+	 * @param word the characters of the word
+	 * @param length the length of the word
+	 * @return the matching rule, or -1 if no suffix matches
+	 */
+	int match(char[] word, int length) {
+		int matched = NO_RULE;
+		int node = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			char c = word[i];
+			int child = firstChild[node];
+			while (child != NO_RULE && labels[child] != c) {
+				child = nextSibling[child];
+			}
+			if (child == NO_RULE) {
+				break;
+			}
+			node = child;
+			if (rules[node] != NO_RULE) {
+				matched = rules[node];
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * @return the length of the suffix that a rule matches
+	 */
+	int suffixLength(int rule) {
+		return suffixLengths[rule];
+	}
+
+	/**
+	 * @return the suffixes that replace the suffix of a rule
+	 */
+	char[][] replacements(int rule) {
+		return replacements[rule];
+	}
+}
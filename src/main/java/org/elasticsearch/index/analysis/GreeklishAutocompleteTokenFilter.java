@@ -0,0 +1,274 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.IntroSorter;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * It replaces each token with its edge n-grams, and a greek token with the
+ * edge n-grams of both the greek token and its greeklish tokens, the same
+ * way that the greeklish filter followed by an edge n-gram filter would,
+ * but each distinct gram is emitted only once. The greeklish tokens of a
+ * greek token share long prefixes, so instead of n-gramming each of them,
+ * they are sorted and each one only adds the grams that are longer than
+ * the prefix that it shares with the previous one, which is a walk of the
+ * prefix tree of the greeklish tokens.
+ * The grams keep the position and the offsets of their token, and the grams
+ * of the greeklish tokens have the {@code greeklish_word} type. Tokens that
+ * are shorter than the minimum gram are removed.
+ */
+public class GreeklishAutocompleteTokenFilter extends TokenFilter {
+
+	private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+	private final PositionIncrementAttribute posIncAttribute = addAttribute(PositionIncrementAttribute.class);
+	private final TypeAttribute typeAttribute = addAttribute(TypeAttribute.class);
+
+	private final int minGram;
+	private final int maxGram;
+
+	/**
+	 * The greeklish converter that generates the greeklish tokens.
+	 */
+	private final GreeklishConverter greeklishConverter;
+
+	/**
+	 * The greeklish tokens of the current token.
+	 */
+	private final GreeklishTokens greeklishWords = new GreeklishTokens();
+
+	/**
+	 * The indexes of the greeklish tokens, in lexicographic order.
+	 */
+	private int[] sorted = new int[0];
+
+	private final WordSorter sorter = new WordSorter();
+
+	/**
+	 * The grams of the current token. The first ones are the grams of the
+	 * token itself, and the rest the grams of its greeklish tokens.
+	 */
+	private final GreeklishTokens grams = new GreeklishTokens();
+
+	/**
+	 * The number of grams of the token itself.
+	 */
+	private int tokenGrams;
+
+	/**
+	 * The next gram to be emitted.
+	 */
+	private int nextGram;
+
+	/**
+	 * The position increment of the first gram of the current token,
+	 * including the increments of the removed tokens before it.
+	 */
+	private int positionIncrement;
+
+	private String tokenType;
+
+	private AttributeSource.State current;
+
+	// Constructor
+	public GreeklishAutocompleteTokenFilter(TokenStream tokenStream, GreeklishOptions options) {
+		super(tokenStream);
+		this.minGram = options.getMinGram();
+		this.maxGram = options.getMaxGram();
+		this.greeklishConverter = new GreeklishConverter(options);
+	}
+
+	@Override
+	public final boolean incrementToken() throws IOException {
+		while (nextGram == grams.size()) {
+			if (!input.incrementToken()) {
+				return false;
+			}
+			positionIncrement += posIncAttribute.getPositionIncrement();
+			addGrams();
+		}
+
+		restoreState(current);
+		int gram = nextGram++;
+		termAttribute.copyBuffer(grams.buffer(), grams.offset(gram), grams.length(gram));
+		if (gram == 0) {
+			posIncAttribute.setPositionIncrement(positionIncrement);
+			positionIncrement = 0;
+		} else {
+			posIncAttribute.setPositionIncrement(0);
+		}
+		typeAttribute.setType(gram < tokenGrams ? tokenType : GreeklishTokenFilter.TOKEN_TYPE);
+		return true;
+	}
+
+	/**
+	 * Finds the distinct grams of the current token and of its greeklish
+	 * tokens.
+	 */
+	private void addGrams() {
+		grams.clear();
+		nextGram = 0;
+		char[] buffer = termAttribute.buffer();
+		int length = termAttribute.length();
+		addPrefixes(buffer, 0, length, 0);
+		tokenGrams = grams.size();
+
+		greeklishWords.clear();
+		if (greeklishConverter.convert(buffer, length, greeklishWords)) {
+			int words = greeklishWords.size();
+			sorted = ArrayUtil.grow(sorted, words);
+			for (int i = 0; i < words; i++) {
+				sorted[i] = i;
+			}
+			sorter.sort(0, words);
+
+			for (int i = 0; i < words; i++) {
+				int word = sorted[i];
+				int shared = i == 0 ? 0 : commonPrefix(sorted[i - 1], word);
+				// the grams up to the shared prefix were added by the previous word
+				if (shared < maxGram) {
+					addPrefixes(greeklishWords.buffer(), greeklishWords.offset(word),
+							greeklishWords.length(word), shared);
+				}
+			}
+		}
+
+		if (grams.size() > 0) {
+			tokenType = typeAttribute.type();
+			current = captureState();
+		}
+	}
+
+	/**
+	 * Adds the prefixes of a word from minGram to maxGram code points that
+	 * are longer than the given number of characters.
+	 */
+	private void addPrefixes(char[] buffer, int offset, int length, int longerThan) {
+		int codePoints = 0;
+		int i = 0;
+		while (i < length && codePoints < maxGram) {
+			i += Character.charCount(Character.codePointAt(buffer, offset + i, offset + length));
+			codePoints++;
+			if (codePoints >= minGram && i > longerThan) {
+				grams.add(buffer, offset, i);
+			}
+		}
+	}
+
+	/**
+	 * @return the length of the common prefix of two greeklish tokens
+	 */
+	private int commonPrefix(int word, int other) {
+		char[] buffer = greeklishWords.buffer();
+		int offset = greeklishWords.offset(word);
+		int otherOffset = greeklishWords.offset(other);
+		int length = Math.min(greeklishWords.length(word), greeklishWords.length(other));
+		int i = 0;
+		while (i < length && buffer[offset + i] == buffer[otherOffset + i]) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return the lexicographic order of two greeklish tokens
+	 */
+	private int compareWords(int word, int other) {
+		int shared = commonPrefix(word, other);
+		int length = greeklishWords.length(word);
+		int otherLength = greeklishWords.length(other);
+		if (shared == length || shared == otherLength) {
+			return Integer.compare(length, otherLength);
+		}
+		char[] buffer = greeklishWords.buffer();
+		return Character.compare(buffer[greeklishWords.offset(word) + shared],
+				buffer[greeklishWords.offset(other) + shared]);
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		positionIncrement = 0;
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, and releases the
+	 * buffers that grew beyond the retained capacities.
+	 */
+	@Override
+	public void end() throws IOException {
+		super.end();
+		// the removed tokens at the end of the stream
+		posIncAttribute.setPositionIncrement(posIncAttribute.getPositionIncrement() + positionIncrement);
+		positionIncrement = 0;
+		greeklishConverter.flushStats();
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, if it did not reach
+	 * its end.
+	 */
+	@Override
+	public void close() throws IOException {
+		greeklishConverter.flushStats();
+		super.close();
+	}
+
+	/**
+	 * @return the memory used by the buffers of the filter, in bytes
+	 */
+	long ramBytesUsed() {
+		return grams.ramBytesUsed() + greeklishWords.ramBytesUsed() + RamUsageEstimator.sizeOf(sorted)
+				+ greeklishConverter.ramBytesUsed();
+	}
+
+	private void release() {
+		nextGram = 0;
+		tokenGrams = 0;
+		current = null;
+		grams.release();
+		greeklishWords.release();
+		if (sorted.length > GreeklishTokens.MAX_RETAINED_TOKENS) {
+			sorted = new int[0];
+		}
+		greeklishConverter.release();
+	}
+
+	/**
+	 * Sorts the indexes of the greeklish tokens without boxing them.
+	 */
+	private final class WordSorter extends IntroSorter {
+		private int pivot;
+
+		@Override
+		protected void swap(int i, int j) {
+			int word = sorted[i];
+			sorted[i] = sorted[j];
+			sorted[j] = word;
+		}
+
+		@Override
+		protected int compare(int i, int j) {
+			return compareWords(sorted[i], sorted[j]);
+		}
+
+		@Override
+		protected void setPivot(int i) {
+			pivot = sorted[i];
+		}
+
+		@Override
+		protected int comparePivot(int j) {
+			return compareWords(pivot, sorted[j]);
+		}
+	}
+}
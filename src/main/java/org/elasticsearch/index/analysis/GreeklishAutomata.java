@@ -0,0 +1,80 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+
+/**
+ * Compiles the digraphs and the conversions of the greeklish generator into
+ * an automaton that accepts all the greeklish words of a greek word. Unlike
+ * the generator, the automaton is not limited by the maximum expansions,
+ * since its size grows with the length of the word and not with the number
+ * of the greeklish words.
+ */
+public final class GreeklishAutomata {
+
+	private GreeklishAutomata() {
+	}
+
+	/**
+	 * @param greekWord
+	 *            a greek word, in any case and with or without accents
+	 * @param generateGreekVariants
+	 *            whether the greeklish words of the singular/plural variants
+	 *            of the word are accepted too
+	 * @return a deterministic automaton of all the greeklish words of the
+	 *         greek word, or null if it is not a greek word
+	 * @throws TooComplexToDeterminizeException
+	 *             if the automaton needs more than the default maximum states
+	 */
+	public static Automaton toAutomaton(String greekWord, boolean generateGreekVariants) {
+		return toAutomaton(greekWord, generateGreekVariants, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+	}
+
+	/**
+	 * @param maxDeterminizedStates
+	 *            the maximum states of the deterministic automaton
+	 * @see #toAutomaton(String, boolean)
+	 */
+	public static Automaton toAutomaton(String greekWord, boolean generateGreekVariants,
+			int maxDeterminizedStates) {
+		char[] normalized = new char[greekWord.length()];
+		if (!GreeklishConverter.normalizeGreekWord(greekWord.toCharArray(), greekWord.length(), normalized)) {
+			return null;
+		}
+		String token = new String(normalized);
+
+		List<String> greekWords = generateGreekVariants
+				? new GreekReverseStemmer().generateGreekVariants(token)
+				: Collections.singletonList(token);
+		List<Automaton> automata = new ArrayList<Automaton>(greekWords.size());
+		for (String word : greekWords) {
+			automata.add(wordAutomaton(word));
+		}
+		return Operations.determinize(Operations.union(automata), maxDeterminizedStates);
+	}
+
+	/**
+	 * @return the concatenation of the conversions of each character of the
+	 *         word, after its digraphs are substituted
+	 */
+	private static Automaton wordAutomaton(String greekWord) {
+		char[] word = greekWord.toCharArray();
+		int length = GreeklishGenerator.substituteDigraphs(word, word.length);
+		List<Automaton> characters = new ArrayList<Automaton>(length);
+		for (int i = 0; i < length; i++) {
+			String[] conversions = GreeklishGenerator.conversions(word[i]);
+			List<Automaton> latin = new ArrayList<Automaton>(conversions.length);
+			for (String conversion : conversions) {
+				latin.add(Automata.makeString(conversion));
+			}
+			characters.add(Operations.union(latin));
+		}
+		return Operations.concatenate(characters);
+	}
+}
@@ -0,0 +1,137 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * It replaces greek and greeklish tokens with their phonetic key, instead
+ * of generating all the greeklish tokens of a greek token. A greek token and
+ * its greeklish spellings get the same key, so the same filter is used both
+ * at index and at search time, and a single term is indexed per token.
+ * This filters acts only on Greek lowercase characters, unless it normalizes
+ * the Greek characters itself, and on latin lowercase characters. The rest of
+ * the tokens are left as they are.
+ *
+ * @see GreeklishCanonicalizer
+ */
+public class GreeklishCanonicalTokenFilter extends TokenFilter {
+
+	private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+
+	/**
+	 * Whether uppercase, accented and final sigma greek characters are
+	 * normalized by the filter.
+	 */
+	private final boolean normalizeGreek;
+
+	/**
+	 * The greek token, normalized and with its digraphs substituted. It is
+	 * reused between the tokens.
+	 */
+	private char[] greekToken = new char[0];
+
+	/**
+	 * The key of the token. It is reused between the tokens.
+	 */
+	private char[] key = new char[0];
+
+	/**
+	 * The stats that the counts of the filter are added to, or null if they
+	 * are not collected.
+	 */
+	private final GreeklishStats stats;
+
+	/**
+	 * The counts of the tokens since they were last added to the stats.
+	 */
+	private final GreeklishStats.Counts counts = new GreeklishStats.Counts();
+
+	// Constructor
+	public GreeklishCanonicalTokenFilter(TokenStream tokenStream, GreeklishOptions options) {
+		super(tokenStream);
+		this.normalizeGreek = options.isNormalizeGreek();
+		this.stats = options.getStats();
+	}
+
+	@Override
+	public final boolean incrementToken() throws IOException {
+		if (!input.incrementToken()) {
+			return false;
+		}
+
+		counts.tokensInspected++;
+		char[] buffer = termAttribute.buffer();
+		int length = termAttribute.length();
+		if (key.length < GreeklishCanonicalizer.maxKeyLength(length)) {
+			key = new char[GreeklishCanonicalizer.maxKeyLength(length)];
+			greekToken = new char[length];
+		}
+
+		boolean greek;
+		if (normalizeGreek) {
+			greek = GreeklishConverter.normalizeGreekWord(buffer, length, greekToken);
+		} else {
+			greek = GreeklishConverter.identifyGreekWord(buffer, length);
+			if (greek) {
+				System.arraycopy(buffer, 0, greekToken, 0, length);
+			}
+		}
+
+		if (greek) {
+			counts.greekTokens++;
+			termAttribute.copyBuffer(key, 0, GreeklishCanonicalizer.foldGreek(greekToken, length, key));
+		} else if (GreeklishCanonicalizer.identifyLatinWord(buffer, length)) {
+			termAttribute.copyBuffer(key, 0, GreeklishCanonicalizer.foldLatin(buffer, length, key));
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, and releases the
+	 * buffers that grew beyond the retained length.
+	 */
+	@Override
+	public void end() throws IOException {
+		super.end();
+		flushStats();
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, if it did not reach
+	 * its end.
+	 */
+	@Override
+	public void close() throws IOException {
+		flushStats();
+		super.close();
+	}
+
+	/**
+	 * Drops the buffers if a long token made them grow beyond the retained
+	 * length. They are allocated together, so they are dropped together.
+	 */
+	private void release() {
+		if (greekToken.length > GreeklishGenerator.MAX_RETAINED_WORD_LENGTH) {
+			greekToken = new char[0];
+			key = new char[0];
+		}
+	}
+
+	private void flushStats() {
+		if (stats != null) {
+			stats.add(counts);
+		} else {
+			counts.reset();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Folds greek and greeklish words to a single phonetic key, so a greek word
+ * and the greeklish spellings of it share the same key. The latin words are
+ * folded from left to right, the longest matching rule first. A greek word
+ * is folded to the key of its most common greeklish spelling, so the rules
+ * that span two greek characters, like the "ph" of "πη", fold it the same
+ * way as that spelling.
+ */
+final class GreeklishCanonicalizer {
+
+	/**
+	 * The latin strings that sound the same, and the string that they are
+	 * folded to. A rule that folds to itself keeps its characters from being
+	 * folded by the shorter rules.
+	 */
+	private static final String[][] latinFoldings = new String[][] {
+			{ "ph", "f" }, { "th", "th" }, { "ch", "x" }, { "ks", "x" },
+			{ "ou", "u" }, { "oy", "u" }, { "ai", "e" }, { "ei", "i" },
+			{ "oi", "i" }, { "eu", "ef" }, { "ev", "ef" }, { "ey", "ef" },
+			{ "au", "af" }, { "av", "af" }, { "ay", "af" }, { "mp", "b" },
+			{ "gg", "g" }, { "gk", "g" }, { "nt", "d" }, { "h", "i" },
+			{ "y", "i" }, { "v", "b" }, { "w", "o" } };
+
+	/**
+	 * The folding rules of each latin lowercase character, the longest
+	 * first, or null if the character is kept as it is.
+	 */
+	private static final String[][][] foldings = new String[26][][];
+
+	/**
+	 * The range of the greek characters and the digraph substitutes, i.e.
+	 * from Α to ω.
+	 */
+	private static final char FIRST_GREEK_UNIT = 'Α';
+	private static final char LAST_GREEK_UNIT = 'ω';
+
+	/**
+	 * The most common greeklish conversion of each greek character or
+	 * digraph substitute, or null if it cannot be converted.
+	 */
+	private static final char[][] greekSpellings = new char[LAST_GREEK_UNIT - FIRST_GREEK_UNIT + 1][];
+
+	static {
+		for (int length = 2; length > 0; length--) {
+			for (String[] folding : latinFoldings) {
+				if (folding[0].length() != length) {
+					continue;
+				}
+				int letter = folding[0].charAt(0) - 'a';
+				String[][] rules = foldings[letter];
+				if (rules == null) {
+					rules = new String[0][];
+				}
+				String[][] grown = new String[rules.length + 1][];
+				System.arraycopy(rules, 0, grown, 0, rules.length);
+				grown[rules.length] = folding;
+				foldings[letter] = grown;
+			}
+		}
+
+		for (char greekUnit = FIRST_GREEK_UNIT; greekUnit <= LAST_GREEK_UNIT; greekUnit++) {
+			String[] conversions = GreeklishGenerator.conversions(greekUnit);
+			if (conversions != null) {
+				greekSpellings[greekUnit - FIRST_GREEK_UNIT] = conversions[0].toCharArray();
+			}
+		}
+	}
+
+	private GreeklishCanonicalizer() {
+	}
+
+	/**
+	 * @return the maximum length of the key of a word of the given length
+	 */
+	static int maxKeyLength(int length) {
+		// a greek character is spelled with at most two latin characters
+		return 2 * length;
+	}
+
+	/**
+	 * Folds a greek lowercase word without accents to its key.
+	 *
+	 * @param greek
+	 *            the characters of the greek word. The digraphs are
+	 *            substituted in place.
+	 * @param length
+	 *            the length of the greek word
+	 * @param key
+	 *            the buffer of the key, of at least maxKeyLength(length)
+	 * @return the length of the key
+	 */
+	static int foldGreek(char[] greek, int length, char[] key) {
+		length = GreeklishGenerator.substituteDigraphs(greek, length);
+		int spellingLength = 0;
+		for (int i = 0; i < length; i++) {
+			char[] spelling = greekSpellings[greek[i] - FIRST_GREEK_UNIT];
+			System.arraycopy(spelling, 0, key, spellingLength, spelling.length);
+			spellingLength += spelling.length;
+		}
+		// the key is never longer than the spelling, so it is folded in place
+		return foldLatin(key, spellingLength, key);
+	}
+
+	/**
+	 * Identifies words with only latin lowercase characters.
+	 */
+	static boolean identifyLatinWord(char[] input, int length) {
+		if (length == 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (input[i] < 'a' || input[i] > 'z') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Folds a latin lowercase word to its key. The key is never longer than
+	 * the word, and no rule folds to more characters than it matches, so the
+	 * key may be folded into the buffer of the word.
+	 *
+	 * @return the length of the key
+	 */
+	static int foldLatin(char[] latin, int length, char[] key) {
+		int keyLength = 0;
+		for (int i = 0; i < length; i++) {
+			String[] folding = matchFolding(latin, i, length);
+			if (folding == null) {
+				key[keyLength++] = latin[i];
+			} else {
+				folding[1].getChars(0, folding[1].length(), key, keyLength);
+				keyLength += folding[1].length();
+				i += folding[0].length() - 1;
+			}
+		}
+		return keyLength;
+	}
+
+	/**
+	 * @return the longest folding rule that matches at the position, or null
+	 */
+	private static String[] matchFolding(char[] latin, int position, int length) {
+		String[][] rules = foldings[latin[position] - 'a'];
+		if (rules == null) {
+			return null;
+		}
+		for (String[] rule : rules) {
+			String from = rule[0];
+			if (position + from.length() > length) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 1; i < from.length(); i++) {
+				if (latin[position + i] != from.charAt(i)) {
+					matches = false;
+					break;
+				}
+			}
+			if (matches) {
+				return rule;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,212 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Immutable lookup tables of the greeklish generator. The digraphs are
+ * indexed by their two characters and the latin conversions by the greek
+ * character, so a lookup is an array access without any boxing. A single
+ * instance is shared by all the generators of the JVM.
+ */
+final class GreeklishConversions {
+
+	/**
+	 * The first and the last character of the lowercase Greek alphabet.
+	 * The digraph table is indexed relative to them.
+	 */
+	private static final char ALPHA = 'α';
+	private static final char OMEGA = 'ω';
+
+	/**
+	 * Number of characters from alpha to omega.
+	 */
+	private static final int GREEK_RANGE = OMEGA - ALPHA + 1;
+
+	/**
+	 * The substitute character of each digraph, or 0 if the pair of
+	 * characters is not a digraph.
+	 */
+	private final char[] digraphs = new char[GREEK_RANGE * GREEK_RANGE];
+
+	/**
+	 * The smallest character that has conversions. The conversions table is
+	 * indexed relative to it.
+	 */
+	private final char firstCharacter;
+
+	/**
+	 * The latin strings that can replace each character, the most common one
+	 * first, or null if the character has no conversions.
+	 */
+	private final String[][] conversions;
+
+	/**
+	 * The natural logarithm of the probability of each conversion, or null
+	 * if the conversions are not weighted.
+	 */
+	private final double[][] logWeights;
+
+	/**
+	 * @param digraphCases
+	 *            pairs of digraphs and the character that substitutes them
+	 * @param convertStrings
+	 *            rows of a character followed by the strings that can replace
+	 *            it
+	 */
+	GreeklishConversions(String[][] digraphCases, String[][] convertStrings) {
+		this(digraphCases, convertStrings, null);
+	}
+
+	/**
+	 * @param digraphCases
+	 *            pairs of digraphs and the character that substitutes them
+	 * @param convertStrings
+	 *            rows of a character followed by the strings that can replace
+	 *            it
+	 * @param convertWeights
+	 *            the weight of each of the strings of the convertStrings
+	 *            rows, or null if the conversions are not weighted. The
+	 *            weights of a row are normalized to probabilities, and the
+	 *            strings are ordered from the most probable one.
+	 */
+	GreeklishConversions(String[][] digraphCases, String[][] convertStrings, double[][] convertWeights) {
+		// populate digraphs
+		for (String[] digraphCase : digraphCases) {
+			digraphs[digraphIndex(digraphCase[0].charAt(0), digraphCase[0].charAt(1))] =
+					digraphCase[1].charAt(0);
+		}
+
+		// populate conversions
+		char first = Character.MAX_VALUE;
+		char last = Character.MIN_VALUE;
+		for (String[] convertString : convertStrings) {
+			first = (char) Math.min(first, convertString[0].charAt(0));
+			last = (char) Math.max(last, convertString[0].charAt(0));
+		}
+		this.firstCharacter = first;
+		this.conversions = new String[last - first + 1][];
+		this.logWeights = convertWeights == null ? null : new double[last - first + 1][];
+		for (int row = 0; row < convertStrings.length; row++) {
+			String[] convertString = convertStrings[row];
+			String[] latin = new String[convertString.length - 1];
+			System.arraycopy(convertString, 1, latin, 0, latin.length);
+			int index = convertString[0].charAt(0) - first;
+			conversions[index] = latin;
+			if (convertWeights != null) {
+				logWeights[index] = sortByWeight(convertString[0], latin, convertWeights[row]);
+			}
+		}
+	}
+
+	/**
+	 * Orders the latin strings of a character from the most probable one.
+	 * Strings of the same weight keep their order.
+	 *
+	 * @return the natural logarithm of the probability of each string
+	 */
+	private static double[] sortByWeight(String greek, String[] latin, double[] weights) {
+		if (weights.length != latin.length) {
+			throw new IllegalArgumentException("Expected " + latin.length
+					+ " weights for the conversions of [" + greek + "] but got " + weights.length);
+		}
+		double total = 0;
+		for (double weight : weights) {
+			if (!(weight > 0) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException("Invalid weight [" + weight
+						+ "] for the conversions of [" + greek + "]");
+			}
+			total += weight;
+		}
+		// insertion sort, the rows have a handful of strings
+		double[] sortedWeights = weights.clone();
+		for (int i = 1; i < latin.length; i++) {
+			for (int j = i; j > 0 && sortedWeights[j] > sortedWeights[j - 1]; j--) {
+				double weight = sortedWeights[j];
+				sortedWeights[j] = sortedWeights[j - 1];
+				sortedWeights[j - 1] = weight;
+				String string = latin[j];
+				latin[j] = latin[j - 1];
+				latin[j - 1] = string;
+			}
+		}
+		double[] logProbabilities = new double[latin.length];
+		for (int i = 0; i < latin.length; i++) {
+			logProbabilities[i] = Math.log(sortedWeights[i] / total);
+		}
+		return logProbabilities;
+	}
+
+	/**
+	 * @return the latin strings that can replace a character, the most common
+	 *         one first, or null if the character cannot be converted.
+	 */
+	String[] conversions(char greekChar) {
+		int index = greekChar - firstCharacter;
+		if (index < 0 || index >= conversions.length) {
+			return null;
+		}
+		return conversions[index];
+	}
+
+	/**
+	 * @return the natural logarithm of the probability of each of the
+	 *         conversions of a character, in the order of the conversions,
+	 *         or null if the conversions are not weighted or the character
+	 *         cannot be converted.
+	 */
+	double[] logWeights(char greekChar) {
+		int index = greekChar - firstCharacter;
+		if (logWeights == null || index < 0 || index >= logWeights.length) {
+			return null;
+		}
+		return logWeights[index];
+	}
+
+	/**
+	 * @return true if each of the conversions carries a probability
+	 */
+	boolean isWeighted() {
+		return logWeights != null;
+	}
+
+	/**
+	 * Replaces the digraphs of a greek word with their substitute characters,
+	 * in a single left to right scan. The substitution happens in place,
+	 * since the word can only shrink.
+	 *
+	 * @param word
+	 *            the characters of the greek word
+	 * @param length
+	 *            the length of the greek word
+	 * @return the length of the word after the substitutions
+	 */
+	int substituteDigraphs(char[] word, int length) {
+		int newLength = 0;
+		for (int i = 0; i < length; i++) {
+			char substitute = 0;
+			if (i + 1 < length) {
+				substitute = digraph(word[i], word[i + 1]);
+			}
+			if (substitute != 0) {
+				word[newLength++] = substitute;
+				i++;
+			} else {
+				word[newLength++] = word[i];
+			}
+		}
+		return newLength;
+	}
+
+	/**
+	 * @return the substitute character of the two characters, or 0 if they
+	 *         are not a digraph.
+	 */
+	char digraph(char first, char second) {
+		if (first < ALPHA || first > OMEGA || second < ALPHA || second > OMEGA) {
+			return 0;
+		}
+		return digraphs[digraphIndex(first, second)];
+	}
+
+	private static int digraphIndex(char first, char second) {
+		return (first - ALPHA) * GREEK_RANGE + (second - ALPHA);
+	}
+}
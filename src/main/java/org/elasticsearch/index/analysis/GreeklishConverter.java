@@ -3,7 +3,7 @@ package org.elasticsearch.index.analysis;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.Loggers;
 
@@ -32,9 +32,60 @@ public class GreeklishConverter {
 	public static final String GREEK_CHARACTERS = "αβγδεζηθικλμνξοπρστυφχψω";
 
 	/**
-	 * Keep the generated greek words from the greek reverse stemmer.
+	 * The first of the Greek characters. The bitset is indexed relative
+	 * to it.
 	 */
-	private List<String> greekWords;
+	private static final char FIRST_GREEK_CHARACTER = 'α';
+
+	/**
+	 * A bit is set for each of the Greek characters.
+	 */
+	private static final long GREEK_CHARACTER_BITS;
+
+	/**
+	 * The first and the last character of the Greek block that are
+	 * normalized, i.e. from Ά to ώ.
+	 */
+	private static final char FIRST_NORMALIZED_CHARACTER = '\u0386';
+	private static final char LAST_NORMALIZED_CHARACTER = '\u03CE';
+
+	/**
+	 * The Greek character that each uppercase, accented or final sigma
+	 * character is normalized to, or 0 if it is not a Greek letter.
+	 */
+	private static final char[] NORMALIZED_CHARACTERS =
+			new char[LAST_NORMALIZED_CHARACTER - FIRST_NORMALIZED_CHARACTER + 1];
+
+	/**
+	 * Pairs of the characters that are normalized to a Greek character
+	 * other than their lowercase form.
+	 */
+	private static final String[] NORMALIZATIONS = {
+		"άα", "Άα", "έε", "Έε", "ήη", "Ήη", "ίι", "Ίι", "ϊι", "Ϊι", "ΐι",
+		"όο", "Όο", "ύυ", "Ύυ", "ϋυ", "Ϋυ", "ΰυ", "ώω", "Ώω", "ςσ"
+	};
+
+	static {
+		long bits = 0L;
+		for (int i = 0; i < GREEK_CHARACTERS.length(); i++) {
+			char greekChar = GREEK_CHARACTERS.charAt(i);
+			bits |= 1L << (greekChar - FIRST_GREEK_CHARACTER);
+			// both the lowercase and the uppercase letter
+			NORMALIZED_CHARACTERS[greekChar - FIRST_NORMALIZED_CHARACTER] = greekChar;
+			NORMALIZED_CHARACTERS[Character.toUpperCase(greekChar) - FIRST_NORMALIZED_CHARACTER] = greekChar;
+		}
+		GREEK_CHARACTER_BITS = bits;
+		for (String normalization : NORMALIZATIONS) {
+			NORMALIZED_CHARACTERS[normalization.charAt(0) - FIRST_NORMALIZED_CHARACTER] =
+					normalization.charAt(1);
+		}
+	}
+
+	/**
+	 * The greek word itself, when no greek variants are generated. It is
+	 * reused between the tokens.
+	 */
+	private final List<String> greekWord = new ArrayList<String>(1);
 
 	/**
 	 * Input token converted into String.
@@ -59,70 +110,410 @@ public class GreeklishConverter {
 	 */
 	private final boolean generateGreekVariants;
 
+	/**
+	 * Setting which is set in the configuration file that defines the
+	 * maximum greeklish expansions per greek word.
+	 */
+	private final int maxExpansions;
+
+	/**
+	 * Setting which is set in the configuration file that defines the
+	 * maximum greeklish words of a greek token, over all its variants.
+	 */
+	private final int maxTokensPerTerm;
+
+	/**
+	 * The node level cache of the generated greeklish words, or null if
+	 * caching is disabled.
+	 */
+	private final GreeklishExpansionCache expansionCache;
+
+	/**
+	 * The options of the conversion, which are part of the keys of the
+	 * expansion cache.
+	 */
+	private final GreeklishOptions options;
+
+	/**
+	 * The reader of the precompiled dictionary, or null if all the words
+	 * are converted by the rules.
+	 */
+	private final GreeklishDictionary.Reader dictionary;
+
+	/**
+	 * The set that the duplicate greeklish words of a token are found with.
+	 */
+	private final GreeklishTokenSet seenWords = new GreeklishTokenSet();
+
+	/**
+	 * The number of duplicate greeklish words that were removed.
+	 */
+	private long removedDuplicates;
+
+	/**
+	 * The stats that the counts of the converter are added to, or null if
+	 * they are not collected.
+	 */
+	private final GreeklishStats stats;
+
+	/**
+	 * The counts of the tokens that were converted since they were last
+	 * added to the stats.
+	 */
+	private final GreeklishStats.Counts counts = new GreeklishStats.Counts();
+
+	/**
+	 * The greeklish words of the last token that was converted.
+	 */
+	private final GreeklishTokens greeklishTokens;
+
+	/**
+	 * Setting which is set in the configuration file that defines whether
+	 * uppercase, accented and final sigma characters are normalized.
+	 */
+	private final boolean normalizeGreek;
+
+	/**
+	 * Buffer for the normalized input token. It is reused between the tokens.
+	 */
+	private char[] normalizedToken = new char[0];
+
+	/**
+	 * The greeklish words that are returned as a list. The StringBuilders
+	 * are reused between the tokens.
+	 */
+	private final List<StringBuilder> greeklishWords;
+
 	// Constructor
 	public GreeklishConverter(int maxExpansions, boolean generateGreekVariants) {
+		this(GreeklishOptions.builder()
+				.maxExpansions(maxExpansions)
+				.generateGreekVariants(generateGreekVariants)
+				.build());
+	}
 
-		// Initialize greekWords list
-		this.greekWords = new ArrayList<String>();
+	// Constructor
+	public GreeklishConverter(GreeklishOptions options) {
+		int maxExpansions = options.getMaxExpansions();
+		boolean generateGreekVariants = options.isGenerateGreekVariants();
 
 		// Initialize reverse stemmer
-		this.reverseStemmer = new GreekReverseStemmer();
+		this.reverseStemmer = new GreekReverseStemmer(options.getRules(), options.getLexicon());
 
 		// Initialize greeklish generator
-		this.greeklishGenerator = new GreeklishGenerator(maxExpansions);
+		this.greeklishGenerator = new GreeklishGenerator(maxExpansions, options.getWeights(), options.getRules());
 
 		// Initialize setting for generating greek variants
 		this.generateGreekVariants = generateGreekVariants;
 
+		this.maxExpansions = maxExpansions;
+
+		this.maxTokensPerTerm = options.getMaxTokensPerTerm();
+
+		this.expansionCache = options.getExpansionCache();
+
+		this.options = options;
+
+		this.dictionary = options.getDictionary() == null ? null : options.getDictionary().reader();
+
+		this.normalizeGreek = options.isNormalizeGreek();
+
+		this.stats = options.getStats();
+
+		this.greeklishTokens = new GreeklishTokens();
+
+		this.greeklishWords = new ArrayList<StringBuilder>();
+
 		logger.debug("Max expansions: [{}] Generate Greek Variants [{}]", maxExpansions, generateGreekVariants);
 	}
 
 	/**
-	 * The actual conversion is happening here.
+	 * Converts a token and returns its greeklish words as a list.
+	 * The returned list and its StringBuilders are reused by the next call.
 	 *
 	 * @param inputToken
 	 *            the Greek token
 	 * @param tokenLength
 	 *            the length of the input token
 	 * @return A list of the generated strings
+	 * @see #convert(char[], int, GreeklishTokens)
 	 */
 	public final List<StringBuilder> convert(char[] inputToken, int tokenLength) {
+		greeklishTokens.clear();
+		if (!convert(inputToken, tokenLength, greeklishTokens)) {
+			return null;
+		}
+		while (greeklishWords.size() < greeklishTokens.size()) {
+			greeklishWords.add(new StringBuilder());
+		}
+		while (greeklishWords.size() > greeklishTokens.size()) {
+			greeklishWords.remove(greeklishWords.size() - 1);
+		}
+		for (int i = 0; i < greeklishTokens.size(); i++) {
+			StringBuilder word = greeklishWords.get(i);
+			word.setLength(0);
+			word.append(greeklishTokens.buffer(), greeklishTokens.offset(i),
+					greeklishTokens.length(i));
+		}
+		return greeklishWords;
+	}
+
+	/**
+	 * The actual conversion is happening here.
+	 *
+	 * @param inputToken
+	 *            the Greek token
+	 * @param tokenLength
+	 *            the length of the input token
+	 * @param greeklishWords
+	 *            the tokens to append the generated greeklish words to
+	 * @return true if greeklish words were generated
+	 */
+	public final boolean convert(char[] inputToken, int tokenLength, GreeklishTokens greeklishWords) {
+		return convert(inputToken, tokenLength, greeklishWords, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Converts a token to at most maxTokens greeklish words, or to
+	 * max_tokens_per_term if it is lower. The words are in the order of the
+	 * conversion, so the first one is the most common spelling of the token
+	 * itself, and a lower budget keeps the most common spellings of the
+	 * variants over their other spellings.
+	 *
+	 * @param inputToken
+	 *            the Greek token
+	 * @param tokenLength
+	 *            the length of the input token
+	 * @param greeklishWords
+	 *            the tokens to append the generated greeklish words to
+	 * @param maxTokens
+	 *            the maximum number of greeklish words to append
+	 * @return true if greeklish words were generated
+	 */
+	public final boolean convert(char[] inputToken, int tokenLength, GreeklishTokens greeklishWords,
+			int maxTokens) {
+		counts.tokensInspected++;
+		// Is this a Greek word?
+		if (normalizeGreek) {
+			if (normalizedToken.length < tokenLength) {
+				normalizedToken = new char[tokenLength];
+			}
+			if (!normalizeGreekWord(inputToken, tokenLength, normalizedToken)) {
+				return false;
+			}
+			inputToken = normalizedToken;
+		} else if (!identifyGreekWord(inputToken, tokenLength)) {
+			return false;
+		}
+		counts.greekTokens++;
+
+		int start = greeklishWords.size();
+		// only the greek tokens are timed, the rest are rejected quickly
+		long startTime = stats == null ? 0L : System.nanoTime();
+		boolean converted = convertGreekWord(inputToken, tokenLength, greeklishWords,
+				Math.min(maxTokens, maxTokensPerTerm));
+		if (stats != null) {
+			counts.convertNanos += System.nanoTime() - startTime;
+		}
+		counts.greeklishTokens += greeklishWords.size() - start;
+		return converted;
+	}
+
+	/**
+	 * Converts a greek word from the cache, the dictionary or the rules.
+	 * The cache and the dictionary keep the words of max_tokens_per_term.
+	 * A lower budget is split across the greek variants by the generator,
+	 * which the words of the cache and the dictionary cannot be cut to, so
+	 * the words of a lower budget are always generated, and not cached.
+	 *
+	 * @param inputToken
+	 *            the normalized Greek token
+	 * @param tokenLength
+	 *            the length of the input token
+	 * @param greeklishWords
+	 *            the tokens to append the generated greeklish words to
+	 * @param maxTokens
+	 *            the maximum number of greeklish words to append
+	 * @return true if greeklish words were generated
+	 */
+	private boolean convertGreekWord(char[] inputToken, int tokenLength, GreeklishTokens greeklishWords,
+			int maxTokens) {
 		// Convert to string in order to pass it to the reverse stemmer.
 		tokenString = new String(inputToken, 0, tokenLength);
-		// Is this a Greek word?
-		if (!identifyGreekWord(tokenString)) {
-			return null;
+		int start = greeklishWords.size();
+
+		boolean fullBudget = maxTokens >= maxTokensPerTerm;
+
+		// Were the greeklish words of this token generated before?
+		if (expansionCache != null && fullBudget) {
+			GreeklishTokens cached = expansionCache.get(tokenString, options);
+			if (cached != null) {
+				greeklishWords.addAll(cached);
+				return !cached.isEmpty();
+			}
+		}
+
+		// Is this a word of the dictionary? It is built with the same
+		// max_tokens_per_term, so its words are the generated ones.
+		if (dictionary != null && fullBudget) {
+			if (dictionary.lookup(inputToken, tokenLength, greeklishWords)) {
+				if (expansionCache != null) {
+					toCache(greeklishWords, start);
+				}
+				return true;
+			}
 		}
 
 		// if generating greek variants is on
+		List<String> greekWords;
 		if (generateGreekVariants) {
 			// generate them
 			greekWords = reverseStemmer.generateGreekVariants(tokenString);
+			counts.greekVariants += greekWords.size();
 		} else {
-			greekWords.add(tokenString);
+			// only the word of this token is expanded
+			greekWord.clear();
+			greekWord.add(tokenString);
+			greekWords = greekWord;
 		}
 
 		// if there are greek words
 		if (greekWords.size() > 0) {
 			// generate their greeklish version
-			return greeklishGenerator.generateGreeklishWords(greekWords);
+			long truncations = greeklishGenerator.getTruncations();
+			greeklishGenerator.generateGreeklishWords(greekWords, greeklishWords, maxTokens);
+			counts.truncations += greeklishGenerator.getTruncations() - truncations;
+			// different variants may have the same greeklish words
+			int removed = greeklishWords.removeDuplicates(start, seenWords);
+			removedDuplicates += removed;
+			counts.duplicatesRemoved += removed;
+			if (expansionCache != null && fullBudget) {
+				toCache(greeklishWords, start);
+			}
+			return greeklishWords.size() > start;
 		} else {
-			return null;
+			return false;
 		}
 	}
 
+	/**
+	 * @return the number of duplicate greeklish words that were removed from
+	 *         the words of the converted tokens
+	 */
+	public long getRemovedDuplicates() {
+		return removedDuplicates;
+	}
+
+	/**
+	 * Adds the counts of the converted tokens to the stats, if they are
+	 * collected, and resets them.
+	 */
+	void flushStats() {
+		if (stats != null) {
+			stats.add(counts);
+		} else {
+			counts.reset();
+		}
+	}
+
+	/**
+	 * Forgets the last converted token and drops the buffers that a long
+	 * token made grow beyond the retained capacities, so that a reused token
+	 * stream keeps a bounded amount of memory. It is called when the token
+	 * stream is reset and when it reaches its end.
+	 */
+	void release() {
+		tokenString = null;
+		greekWord.clear();
+		if (normalizedToken.length > GreeklishGenerator.MAX_RETAINED_WORD_LENGTH) {
+			normalizedToken = new char[0];
+		}
+		greeklishTokens.release();
+		greeklishWords.clear();
+		seenWords.release();
+		reverseStemmer.release();
+		greeklishGenerator.release();
+	}
+
+	/**
+	 * @return the memory used by the buffers of the converter, in bytes
+	 */
+	long ramBytesUsed() {
+		return RamUsageEstimator.sizeOf(normalizedToken) + greeklishTokens.ramBytesUsed()
+				+ seenWords.ramBytesUsed() + reverseStemmer.ramBytesUsed() + greeklishGenerator.ramBytesUsed();
+	}
+
+	/**
+	 * Caches the greeklish words of the current token, i.e. the ones that
+	 * were appended after the start index.
+	 */
+	private void toCache(GreeklishTokens greeklishWords, int start) {
+		GreeklishTokens words;
+		if (start == 0) {
+			words = greeklishWords.copy();
+		} else {
+			words = new GreeklishTokens();
+			for (int i = start; i < greeklishWords.size(); i++) {
+				words.add(greeklishWords.buffer(), greeklishWords.offset(i), greeklishWords.length(i));
+			}
+			words = words.copy();
+		}
+		expansionCache.put(tokenString, options, words);
+	}
+
 	/**
 	 * Identifies words with only Greek lowercase characters.
+	 * It works on the buffer of the token, so nothing is allocated for the
+	 * tokens that are not Greek.
 	 *
 	 * @param input
-	 *            The string that will examine
-	 * @return true if the string contains only Greek characters
+	 *            The characters that will examine
+	 * @param length
+	 *            The number of characters
+	 * @return true if the characters are only Greek characters
 	 */
-	private boolean identifyGreekWord(String input) {
-		if (StringUtils.containsOnly(input, GREEK_CHARACTERS)) {
-			return true;
-		} else {
+	static boolean identifyGreekWord(char[] input, int length) {
+		if (length == 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			int index = input[i] - FIRST_GREEK_CHARACTER;
+			// the index is out of the bitset if any bit above the 6 lowest is set
+			if ((index & ~63) != 0 || (GREEK_CHARACTER_BITS & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Identifies words with only Greek characters, in any case and with or
+	 * without accents, and normalizes them to the Greek lowercase characters
+	 * that the filter acts on, i.e. without tonos, dialytika or final sigma.
+	 *
+	 * @param input
+	 *            The characters that will examine
+	 * @param length
+	 *            The number of characters
+	 * @param output
+	 *            The buffer where the normalized characters are written
+	 * @return true if the characters are only Greek characters
+	 */
+	static boolean normalizeGreekWord(char[] input, int length, char[] output) {
+		if (length == 0) {
 			return false;
 		}
+		for (int i = 0; i < length; i++) {
+			char c = input[i];
+			if (c < FIRST_NORMALIZED_CHARACTER || c > LAST_NORMALIZED_CHARACTER) {
+				return false;
+			}
+			char normalized = NORMALIZED_CHARACTERS[c - FIRST_NORMALIZED_CHARACTER];
+			if (normalized == 0) {
+				return false;
+			}
+			output[i] = normalized;
+		}
+		return true;
 	}
 }
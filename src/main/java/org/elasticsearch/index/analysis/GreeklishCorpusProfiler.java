@@ -0,0 +1,658 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.lucene.util.IntroSorter;
+
+/**
+ * Profiles the greeklish expansion of a corpus offline, to size the settings
+ * of the filter before reindexing. The corpus is a file with one text per
+ * line, e.g. the titles of the products of an index, which is memory mapped
+ * in segments that are tokenized in parallel. The tokens are the runs of
+ * letters and digits, and the greek ones are normalized like the filter does
+ * with normalize_greek. Then each distinct greek word is converted once, in
+ * parallel, and its counts are weighted by its frequency in the corpus.
+ * <p>
+ * The report has the distribution of the greek variants and of the greeklish
+ * tokens per greek token, the share of the greek tokens whose greeklish
+ * tokens are cut at each of a few max_expansions, and the greek words that
+ * cost the most conversion time over the corpus. The most frequent words can
+ * also be written to a dictionary file for expansion_dictionary_path.
+ * <p>
+ * From the command line:
+ * <pre>
+ * java -cp ... org.elasticsearch.index.analysis.GreeklishCorpusProfiler \
+ *     corpus.txt [max_expansions=20] [max_tokens_per_term=N] [greek_variants=true] [weighted_expansions=false] \
+ *     [thresholds=5,10,20,50,100] [top=20] [threads=N] [dictionary=greeklish.dict] [dictionary_words=10000]
+ * </pre>
+ */
+public final class GreeklishCorpusProfiler {
+
+	/**
+	 * The size of the segments of the corpus that are tokenized in parallel.
+	 */
+	static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+
+	/**
+	 * The number of distinct words that a task converts without splitting.
+	 */
+	private static final int WORDS_PER_TASK = 1024;
+
+	/**
+	 * The number of greek variants above which the tokens are counted
+	 * together.
+	 */
+	private static final int MAX_VARIANTS = 10;
+
+	/**
+	 * The upper bounds of the buckets of the greeklish tokens per greek
+	 * token. The tokens above the last one are counted together.
+	 */
+	private static final int[] EXPANSION_BOUNDS = { 0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
+
+	private GreeklishCorpusProfiler() {
+	}
+
+	/**
+	 * Profiles a corpus.
+	 *
+	 * @param corpus
+	 *            the corpus file, in UTF-8 with one text per line
+	 * @param options
+	 *            the options of the conversion
+	 * @param thresholds
+	 *            the max_expansions whose truncation rates are reported
+	 * @param pool
+	 *            the pool that the corpus is processed in
+	 * @return the report of the corpus
+	 * @throws IOException
+	 *             if the corpus cannot be read
+	 */
+	public static Report profile(Path corpus, GreeklishOptions options, int[] thresholds, ForkJoinPool pool)
+			throws IOException {
+		return profile(corpus, options, thresholds, pool, SEGMENT_SIZE);
+	}
+
+	static Report profile(Path corpus, GreeklishOptions options, int[] thresholds, ForkJoinPool pool,
+			int segmentSize) throws IOException {
+		Counts counts;
+		long bytes;
+		try (FileChannel channel = FileChannel.open(corpus, StandardOpenOption.READ)) {
+			bytes = channel.size();
+			List<long[]> segments = segments(channel, segmentSize);
+			counts = segments.isEmpty() ? new Counts() : pool.invoke(new CountTask(channel, segments, 0,
+					segments.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		Report report = new Report(corpus, bytes, counts, options, thresholds);
+		if (report.words.length > 0) {
+			pool.invoke(new ConvertTask(report, options, 0, report.words.length));
+		}
+		report.aggregate();
+		return report;
+	}
+
+	/**
+	 * Splits the corpus in segments of about the given size that end at the
+	 * end of a line.
+	 * @return the start and the end offset of each segment
+	 */
+	private static List<long[]> segments(FileChannel channel, int segmentSize) throws IOException {
+		List<long[]> segments = new ArrayList<long[]>();
+		long size = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long start = 0;
+		while (start < size) {
+			long end = nextLine(channel, Math.min(size, start + segmentSize), buffer);
+			segments.add(new long[] { start, end });
+			start = end;
+		}
+		return segments;
+	}
+
+	/**
+	 * @return the offset after the first new line from the position on, or
+	 *         the size of the file if there is none
+	 */
+	private static long nextLine(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		long size = channel.size();
+		while (position < size) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * The counts of the tokens of a part of the corpus.
+	 */
+	private static final class Counts {
+		private long lines;
+		private long tokens;
+		private long greekTokens;
+		private final Map<String, long[]> frequencies = new HashMap<String, long[]>();
+
+		/**
+		 * @return the counts of both parts, reusing the larger one
+		 */
+		Counts merge(Counts other) {
+			Counts larger = frequencies.size() >= other.frequencies.size() ? this : other;
+			Counts smaller = larger == this ? other : this;
+			larger.lines += smaller.lines;
+			larger.tokens += smaller.tokens;
+			larger.greekTokens += smaller.greekTokens;
+			for (Map.Entry<String, long[]> word : smaller.frequencies.entrySet()) {
+				long[] frequency = larger.frequencies.get(word.getKey());
+				if (frequency == null) {
+					larger.frequencies.put(word.getKey(), word.getValue());
+				} else {
+					frequency[0] += word.getValue()[0];
+				}
+			}
+			return larger;
+		}
+	}
+
+	/**
+	 * Tokenizes the segments of the corpus and counts the greek words.
+	 */
+	private static final class CountTask extends RecursiveTask<Counts> {
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel channel;
+		private final List<long[]> segments;
+		private final int from;
+		private final int to;
+
+		CountTask(FileChannel channel, List<long[]> segments, int from, int to) {
+			this.channel = channel;
+			this.segments = segments;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Counts compute() {
+			if (to - from == 1) {
+				try {
+					return count(segments.get(from));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int middle = (from + to) >>> 1;
+			CountTask left = new CountTask(channel, segments, from, middle);
+			left.fork();
+			Counts right = new CountTask(channel, segments, middle, to).compute();
+			return left.join().merge(right);
+		}
+
+		private Counts count(long[] segment) throws IOException {
+			CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			CharBuffer text = decoder.decode(channel.map(FileChannel.MapMode.READ_ONLY, segment[0],
+					segment[1] - segment[0]));
+			char[] chars = text.array();
+			int offset = text.arrayOffset() + text.position();
+			int end = text.arrayOffset() + text.limit();
+
+			Counts counts = new Counts();
+			char[] normalized = new char[0];
+			int tokenStart = -1;
+			for (int i = offset; i <= end; i++) {
+				char c = i < end ? chars[i] : '\n';
+				if (i < end && Character.isLetterOrDigit(c)) {
+					if (tokenStart < 0) {
+						tokenStart = i;
+					}
+					continue;
+				}
+				if (tokenStart >= 0) {
+					int length = i - tokenStart;
+					counts.tokens++;
+					if (normalized.length < length) {
+						normalized = new char[length];
+					}
+					System.arraycopy(chars, tokenStart, normalized, 0, length);
+					if (GreeklishConverter.normalizeGreekWord(normalized, length, normalized)) {
+						counts.greekTokens++;
+						String word = new String(normalized, 0, length);
+						long[] frequency = counts.frequencies.get(word);
+						if (frequency == null) {
+							counts.frequencies.put(word, new long[] { 1 });
+						} else {
+							frequency[0]++;
+						}
+					}
+					tokenStart = -1;
+				}
+				// the last line of the corpus may not end with a new line
+				if (i < end ? c == '\n' : end > offset && chars[end - 1] != '\n') {
+					counts.lines++;
+				}
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Converts the distinct greek words of the corpus.
+	 */
+	private static final class ConvertTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Report report;
+		private final GreeklishOptions options;
+		private final int from;
+		private final int to;
+
+		ConvertTask(Report report, GreeklishOptions options, int from, int to) {
+			this.report = report;
+			this.options = options;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > WORDS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ConvertTask(report, options, from, middle),
+						new ConvertTask(report, options, middle, to));
+				return;
+			}
+
+			// the converters and the stemmers are not thread safe
+			GreeklishConverter converter = new GreeklishConverter(options);
+			GreekReverseStemmer reverseStemmer = new GreekReverseStemmer(options.getRules(), options.getLexicon());
+			GreeklishRules rules = options.getRules();
+			GreeklishTokens greeklishWords = new GreeklishTokens();
+			char[] units = new char[0];
+			for (int word = from; word < to; word++) {
+				String greekWord = report.words[word];
+				List<String> greekVariants = options.isGenerateGreekVariants()
+						? reverseStemmer.generateGreekVariants(greekWord)
+						: Collections.singletonList(greekWord);
+				report.variants[word] = greekVariants.size();
+
+				long possibleExpansions = 0;
+				for (String greekVariant : greekVariants) {
+					if (units.length < greekVariant.length()) {
+						units = new char[greekVariant.length()];
+					}
+					greekVariant.getChars(0, greekVariant.length(), units, 0);
+					int length = rules.substituteDigraphs(units, greekVariant.length());
+					long expansions = 1;
+					for (int i = 0; i < length; i++) {
+						expansions = GreeklishExplanation.multiply(expansions, rules.conversions(units[i]).length);
+					}
+					possibleExpansions = Math.max(possibleExpansions, expansions);
+				}
+				report.possibleExpansions[word] = possibleExpansions;
+
+				greeklishWords.clear();
+				long start = System.nanoTime();
+				converter.convert(greekWord.toCharArray(), greekWord.length(), greeklishWords);
+				report.nanos[word] = System.nanoTime() - start;
+				report.expansions[word] = greeklishWords.size();
+			}
+		}
+	}
+
+	/**
+	 * The report of a corpus.
+	 */
+	public static final class Report {
+		private final Path corpus;
+		private final long bytes;
+		private final long lines;
+		private final long tokens;
+		private final long greekTokens;
+		private final int maxExpansions;
+		private final int[] thresholds;
+
+		/**
+		 * The distinct greek words and the counts of each one.
+		 */
+		private final String[] words;
+		private final long[] frequencies;
+		private final int[] variants;
+		private final int[] expansions;
+		private final long[] possibleExpansions;
+		private final long[] nanos;
+
+		/**
+		 * The counts of the greek tokens, weighted by their frequency.
+		 */
+		private final long[] variantsHistogram = new long[MAX_VARIANTS + 1];
+		private final long[] expansionsHistogram = new long[EXPANSION_BOUNDS.length + 1];
+		private final long[] truncatedTokens;
+		private long greeklishTokens;
+		private long convertNanos;
+
+		private Report(Path corpus, long bytes, Counts counts, GreeklishOptions options, int[] thresholds) {
+			this.corpus = corpus;
+			this.bytes = bytes;
+			this.lines = counts.lines;
+			this.tokens = counts.tokens;
+			this.greekTokens = counts.greekTokens;
+			this.maxExpansions = options.getMaxExpansions();
+			this.thresholds = thresholds.clone();
+			Arrays.sort(this.thresholds);
+
+			int size = counts.frequencies.size();
+			this.words = counts.frequencies.keySet().toArray(new String[size]);
+			Arrays.sort(words);
+			this.frequencies = new long[size];
+			for (int i = 0; i < size; i++) {
+				frequencies[i] = counts.frequencies.get(words[i])[0];
+			}
+			this.variants = new int[size];
+			this.expansions = new int[size];
+			this.possibleExpansions = new long[size];
+			this.nanos = new long[size];
+			this.truncatedTokens = new long[thresholds.length];
+		}
+
+		private void aggregate() {
+			for (int word = 0; word < words.length; word++) {
+				long frequency = frequencies[word];
+				variantsHistogram[Math.min(variants[word], MAX_VARIANTS)] += frequency;
+				expansionsHistogram[bucket(expansions[word])] += frequency;
+				for (int i = 0; i < thresholds.length; i++) {
+					if (possibleExpansions[word] > thresholds[i]) {
+						truncatedTokens[i] += frequency;
+					}
+				}
+				greeklishTokens += frequency * expansions[word];
+				convertNanos += frequency * nanos[word];
+			}
+		}
+
+		private static int bucket(int expansions) {
+			for (int i = 0; i < EXPANSION_BOUNDS.length; i++) {
+				if (expansions <= EXPANSION_BOUNDS[i]) {
+					return i;
+				}
+			}
+			return EXPANSION_BOUNDS.length;
+		}
+
+		public long getLines() {
+			return lines;
+		}
+
+		public long getTokens() {
+			return tokens;
+		}
+
+		public long getGreekTokens() {
+			return greekTokens;
+		}
+
+		/**
+		 * @return the number of distinct greek words
+		 */
+		public int getGreekWords() {
+			return words.length;
+		}
+
+		/**
+		 * @return the number of greeklish tokens of all the greek tokens
+		 */
+		public long getGreeklishTokens() {
+			return greeklishTokens;
+		}
+
+		/**
+		 * @return the number of occurrences of a normalized greek word
+		 */
+		public long getFrequency(String greekWord) {
+			int word = Arrays.binarySearch(words, greekWord);
+			return word < 0 ? 0 : frequencies[word];
+		}
+
+		/**
+		 * @return the number of greek tokens with each number of greek
+		 *         variants, up to 10 and more
+		 */
+		public long[] getVariantsHistogram() {
+			return variantsHistogram.clone();
+		}
+
+		/**
+		 * @return the share of the greek tokens whose greeklish tokens are
+		 *         cut at the given max_expansions, which must be one of the
+		 *         thresholds of the report
+		 */
+		public double getTruncationRate(int maxExpansions) {
+			int threshold = Arrays.binarySearch(thresholds, maxExpansions);
+			if (threshold < 0) {
+				throw new IllegalArgumentException("The truncations at [" + maxExpansions + "] are not profiled");
+			}
+			return greekTokens == 0 ? 0 : (double) truncatedTokens[threshold] / greekTokens;
+		}
+
+		/**
+		 * @return the most frequent greek words, from the most frequent one
+		 */
+		public List<String> mostFrequentWords(int count) {
+			return top(count, frequencies);
+		}
+
+		/**
+		 * @return the greek words that took the most conversion time over
+		 *         the corpus, from the costliest one
+		 */
+		public List<String> costliestWords(int count) {
+			return top(count, costs());
+		}
+
+		private List<String> top(int count, long[] values) {
+			int[] order = order(values);
+			List<String> top = new ArrayList<String>();
+			for (int i = 0; i < Math.min(count, order.length); i++) {
+				top.add(words[order[i]]);
+			}
+			return top;
+		}
+
+		/**
+		 * @return the indices of the words from the highest value, and in
+		 *         the order of the words for equal values
+		 */
+		private int[] order(long[] values) {
+			int[] order = new int[words.length];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+			new IntroSorter() {
+				private int pivot;
+
+				@Override
+				protected void swap(int i, int j) {
+					int word = order[i];
+					order[i] = order[j];
+					order[j] = word;
+				}
+
+				@Override
+				protected int compare(int i, int j) {
+					return compareWords(order[i], order[j]);
+				}
+
+				@Override
+				protected void setPivot(int i) {
+					pivot = order[i];
+				}
+
+				@Override
+				protected int comparePivot(int j) {
+					return compareWords(pivot, order[j]);
+				}
+
+				private int compareWords(int word, int other) {
+					int comparison = Long.compare(values[other], values[word]);
+					return comparison != 0 ? comparison : Integer.compare(word, other);
+				}
+			}.sort(0, order.length);
+			return order;
+		}
+
+		/**
+		 * Prints the report.
+		 *
+		 * @param out
+		 *            the stream to print to
+		 * @param top
+		 *            the number of the costliest words to print
+		 */
+		public void print(PrintStream out, int top) {
+			out.println("Corpus [" + corpus + "]: " + bytes + " bytes, " + lines + " lines, " + tokens
+					+ " tokens, " + greekTokens + " greek tokens, " + words.length + " distinct greek words");
+			out.println();
+
+			out.println("Greek variants per greek token:");
+			for (int i = 1; i <= MAX_VARIANTS; i++) {
+				printRow(out, i == MAX_VARIANTS ? ">=" + i : String.valueOf(i), variantsHistogram[i]);
+			}
+			out.println();
+
+			out.println("Greeklish tokens per greek token (max_expansions=" + maxExpansions + " per variant, average "
+					+ format(greekTokens == 0 ? 0 : (double) greeklishTokens / greekTokens) + "):");
+			for (int i = 0; i <= EXPANSION_BOUNDS.length; i++) {
+				String bucket;
+				if (i == EXPANSION_BOUNDS.length) {
+					bucket = ">" + EXPANSION_BOUNDS[i - 1];
+				} else if (i == 0 || EXPANSION_BOUNDS[i - 1] + 1 == EXPANSION_BOUNDS[i]) {
+					bucket = String.valueOf(EXPANSION_BOUNDS[i]);
+				} else {
+					bucket = (EXPANSION_BOUNDS[i - 1] + 1) + "-" + EXPANSION_BOUNDS[i];
+				}
+				printRow(out, bucket, expansionsHistogram[i]);
+			}
+			out.println();
+
+			out.println("Greek tokens with a variant that is cut at max_expansions:");
+			for (int i = 0; i < thresholds.length; i++) {
+				printRow(out, String.valueOf(thresholds[i]), truncatedTokens[i]);
+			}
+			out.println();
+
+			out.println("Costliest greek words (" + (convertNanos / 1000000) + " ms in total):");
+			out.println(String.format("  %-24s %12s %10s %14s %12s", "word", "frequency", "greeklish",
+					"total tokens", "total ms"));
+			int[] order = order(costs());
+			for (int i = 0; i < Math.min(top, order.length); i++) {
+				int word = order[i];
+				out.println(String.format("  %-24s %12d %10d %14d %12s", words[word], frequencies[word],
+						expansions[word], frequencies[word] * expansions[word],
+						format(frequencies[word] * nanos[word] / 1000000.0)));
+			}
+		}
+
+		private long[] costs() {
+			long[] cost = new long[words.length];
+			for (int word = 0; word < words.length; word++) {
+				cost[word] = frequencies[word] * nanos[word];
+			}
+			return cost;
+		}
+
+		private void printRow(PrintStream out, String bucket, long count) {
+			out.println(String.format("  %-10s %12d %8s%%", bucket, count,
+					format(greekTokens == 0 ? 0 : 100.0 * count / greekTokens)));
+		}
+
+		private static String format(double value) {
+			return String.format("%.2f", value);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: GreeklishCorpusProfiler <corpus>"
+					+ " [max_expansions=N] [max_tokens_per_term=N] [greek_variants=true|false]"
+					+ " [weighted_expansions=true|false]"
+					+ " [thresholds=N,N,...] [top=N] [threads=N] [dictionary=<file>] [dictionary_words=N]");
+			System.exit(1);
+		}
+		GreeklishOptions.Builder options = GreeklishOptions.builder();
+		int[] thresholds = { 5, 10, 20, 50, 100 };
+		int top = 20;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Path dictionary = null;
+		int dictionaryWords = 10000;
+		for (int i = 1; i < args.length; i++) {
+			String[] setting = GreeklishDictionaryBuilder.parseArgument(args[i]);
+			switch (setting[0]) {
+			case "thresholds":
+				thresholds = Arrays.stream(setting[1].split(",")).mapToInt(Integer::parseInt).toArray();
+				break;
+			case "top":
+				top = Integer.parseInt(setting[1]);
+				break;
+			case "threads":
+				threads = Integer.parseInt(setting[1]);
+				break;
+			case "dictionary":
+				dictionary = Paths.get(setting[1]);
+				break;
+			case "dictionary_words":
+				dictionaryWords = Integer.parseInt(setting[1]);
+				break;
+			default:
+				GreeklishDictionaryBuilder.parseSetting(options, setting[0], setting[1]);
+			}
+		}
+
+		GreeklishOptions conversion = options.build();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Report report;
+		try {
+			report = profile(Paths.get(args[0]), conversion, thresholds, pool);
+		} finally {
+			pool.shutdown();
+		}
+		report.print(System.out, top);
+
+		if (dictionary != null) {
+			long words = GreeklishDictionaryBuilder.build(report.mostFrequentWords(dictionaryWords), conversion,
+					dictionary);
+			System.out.println();
+			System.out.println("Built [" + dictionary + "] with the [" + words + "] most frequent greek words");
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
+import org.apache.lucene.util.fst.Outputs;
+
+/**
+ * A precompiled dictionary of the greeklish words of greek words. It is a
+ * Lucene FST from each greek word to its greeklish words, memory mapped from
+ * a file that is built offline by {@link GreeklishDictionaryBuilder}, so
+ * the dictionary lives off heap and is shared by all the filters of a node.
+ * Words that are not in the dictionary are converted by the rules.
+ */
+public class GreeklishDictionary implements Closeable {
+
+	/**
+	 * The codec name and version of the dictionary files. Since
+	 * VERSION_OPTIONS the header has the options that the dictionary was
+	 * built with.
+	 */
+	static final String CODEC_NAME = "greeklish_dictionary";
+	static final int VERSION_START = 0;
+	static final int VERSION_OPTIONS = 1;
+	static final int VERSION_CURRENT = VERSION_OPTIONS;
+
+	static final Outputs<BytesRef> OUTPUTS = ByteSequenceOutputs.getSingleton();
+
+	private final Path path;
+
+	private final Directory directory;
+
+	private final IndexInput input;
+
+	private final FST<BytesRef> fst;
+
+	/**
+	 * The options that the dictionary was built with, or null if the file
+	 * does not have them.
+	 */
+	private final String buildOptions;
+
+	/**
+	 * Memory maps a dictionary file.
+	 *
+	 * @param path
+	 *            the dictionary file
+	 * @throws IOException
+	 *             if the file cannot be read or it is not a dictionary
+	 */
+	public GreeklishDictionary(Path path) throws IOException {
+		this.path = path;
+		this.directory = new MMapDirectory(path.toAbsolutePath().getParent());
+		IndexInput input = null;
+		boolean success = false;
+		try {
+			input = directory.openInput(path.getFileName().toString(), IOContext.READ);
+			int version = CodecUtil.checkHeader(input, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+			this.buildOptions = version >= VERSION_OPTIONS ? input.readString() : null;
+			this.fst = new FST<BytesRef>(input, OUTPUTS, new OffHeapFSTStore());
+			CodecUtil.retrieveChecksum(input);
+			this.input = input;
+			success = true;
+		} finally {
+			if (!success) {
+				IOUtils.closeWhileHandlingException(input, directory);
+			}
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the options of the conversion that are stored in the header of
+	 *         a dictionary. The dictionary replaces the conversion of its
+	 *         words, so these options must be the same for the filter that
+	 *         uses it.
+	 */
+	static String buildOptions(GreeklishOptions options) {
+		GreeklishWeights weights = options.getWeights();
+		GreeklishLexicon lexicon = options.getLexicon();
+		return "max_expansions=" + options.getMaxExpansions()
+				+ ",max_tokens_per_term=" + options.getMaxTokensPerTerm()
+				+ ",greek_variants=" + options.isGenerateGreekVariants()
+				+ ",weights=" + (weights == null ? "none" : Integer.toHexString(weights.hashCode()))
+				+ ",rules=" + Integer.toHexString(options.getRules().hashCode())
+				+ ",lexicon=" + (lexicon == null ? "none" : Long.toHexString(lexicon.checksum()));
+	}
+
+	/**
+	 * Checks that the dictionary was built with the same options as a
+	 * filter, so that its words are the words that the filter would
+	 * generate.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the dictionary was built with other options
+	 */
+	void checkOptions(GreeklishOptions options) {
+		String filterOptions = buildOptions(options);
+		if (!filterOptions.equals(buildOptions)) {
+			throw new IllegalArgumentException("The greeklish dictionary [" + path + "] was built with ["
+					+ (buildOptions == null ? "unknown options" : buildOptions) + "] instead of [" + filterOptions
+					+ "], it must be built again with the options of the filter");
+		}
+	}
+
+	/**
+	 * @return the size of the dictionary file
+	 */
+	public long sizeInBytes() {
+		return input.length();
+	}
+
+	/**
+	 * @return a reader of the dictionary. A reader must be used by a single
+	 *         thread.
+	 */
+	public Reader reader() {
+		return new Reader();
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOUtils.close(input, directory);
+	}
+
+	/**
+	 * Looks up greek words in the dictionary. The buffers of the reader are
+	 * reused between the lookups.
+	 */
+	public final class Reader {
+		private final FST.BytesReader bytesReader = fst.getBytesReader();
+		private final FST.Arc<BytesRef> arc = new FST.Arc<BytesRef>();
+		private final BytesRefBuilder words = new BytesRefBuilder();
+		private final ByteArrayDataInput output = new ByteArrayDataInput();
+		private char[] greeklishWord = new char[0];
+
+		private Reader() {
+		}
+
+		/**
+		 * Appends the greeklish words of a greek word to the greeklish
+		 * tokens, if the word is in the dictionary.
+		 *
+		 * @param greekWord
+		 *            the characters of the greek word
+		 * @param length
+		 *            the length of the greek word
+		 * @param greeklishWords
+		 *            the tokens to append the greeklish words to
+		 * @return true if the word is in the dictionary
+		 */
+		public boolean lookup(char[] greekWord, int length, GreeklishTokens greeklishWords) {
+			try {
+				if (!find(greekWord, length)) {
+					return false;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read greeklish dictionary [" + path + "]", e);
+			}
+			output.reset(words.bytes(), 0, words.length());
+			int count = output.readVInt();
+			for (int i = 0; i < count; i++) {
+				int wordLength = output.readVInt();
+				greeklishWord = ArrayUtil.grow(greeklishWord, wordLength);
+				int chars = UnicodeUtil.UTF8toUTF16(words.bytes(), output.getPosition(), wordLength, greeklishWord);
+				output.skipBytes(wordLength);
+				greeklishWords.add(greeklishWord, 0, chars);
+			}
+			return true;
+		}
+
+		/**
+		 * Follows the arcs of the greek word and concatenates their outputs
+		 * in the words buffer, which is what adding the outputs does for
+		 * byte sequences, without allocating.
+		 * @return true if the word is in the dictionary
+		 */
+		private boolean find(char[] greekWord, int length) throws IOException {
+			fst.getFirstArc(arc);
+			words.clear();
+			for (int i = 0; i < length; i++) {
+				if (fst.findTargetArc(greekWord[i], arc, arc, bytesReader) == null) {
+					return false;
+				}
+				words.append(arc.output());
+			}
+			if (!arc.isFinal()) {
+				return false;
+			}
+			words.append(arc.nextFinalOutput());
+			return true;
+		}
+	}
+
+	/**
+	 * The dictionaries of a node. Filters that are configured with the
+	 * same dictionary file share the same dictionary.
+	 */
+	public static class Registry implements Closeable {
+		private final Map<Path, GreeklishDictionary> dictionaries =
+				new ConcurrentHashMap<Path, GreeklishDictionary>();
+
+		/**
+		 * @return the dictionary of the file, memory mapped the first time
+		 *         that it is requested.
+		 * @throws IllegalArgumentException
+		 *             if the dictionary cannot be loaded
+		 */
+		public GreeklishDictionary get(Path path) {
+			return dictionaries.computeIfAbsent(path.toAbsolutePath().normalize(), file -> {
+				try {
+					return new GreeklishDictionary(file);
+				} catch (IOException e) {
+					throw new IllegalArgumentException("Failed to load greeklish dictionary [" + file + "]", e);
+				}
+			});
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOUtils.close(dictionaries.values());
+			dictionaries.clear();
+		}
+	}
+}
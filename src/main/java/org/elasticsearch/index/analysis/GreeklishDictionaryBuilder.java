@@ -0,0 +1,192 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * Builds a {@link GreeklishDictionary} offline, from a vocabulary of greek
+ * words. The greeklish words of each word are generated by the rules, with
+ * the same options as the filter that will use the dictionary.
+ * <p>
+ * From the command line:
+ * <pre>
+ * java -cp ... org.elasticsearch.index.analysis.GreeklishDictionaryBuilder \
+ *     vocabulary.txt greeklish.dict [max_expansions=20] [max_tokens_per_term=N] [greek_variants=true] \
+ *     [weighted_expansions=false] [greek_lexicon=lexicon.txt]
+ * </pre>
+ * The options are stored in the dictionary, and a filter with other options
+ * does not load it.
+ */
+public final class GreeklishDictionaryBuilder {
+
+	private GreeklishDictionaryBuilder() {
+	}
+
+	/**
+	 * Builds a dictionary file.
+	 *
+	 * @param vocabulary
+	 *            the greek words, in any case and with or without accents.
+	 *            Words that are not greek are skipped.
+	 * @param options
+	 *            the options of the conversion
+	 * @param dictionary
+	 *            the dictionary file to write
+	 * @return the number of words in the dictionary
+	 * @throws IOException
+	 *             if the dictionary cannot be written
+	 * @throws IllegalArgumentException
+	 *             if the vocabulary has no greek words
+	 */
+	public static long build(Iterable<String> vocabulary, GreeklishOptions options, Path dictionary)
+			throws IOException {
+		// the FST is keyed by the normalized words, in sorted order
+		TreeSet<String> greekWords = new TreeSet<String>();
+		char[] normalized = new char[0];
+		for (String word : vocabulary) {
+			word = word.trim();
+			if (normalized.length < word.length()) {
+				normalized = new char[word.length()];
+			}
+			if (GreeklishConverter.normalizeGreekWord(word.toCharArray(), word.length(), normalized)) {
+				greekWords.add(new String(normalized, 0, word.length()));
+			}
+		}
+
+		GreeklishConverter converter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(options.getMaxExpansions())
+				.maxTokensPerTerm(options.getMaxTokensPerTerm())
+				.generateGreekVariants(options.isGenerateGreekVariants())
+				.weights(options.getWeights())
+				.rules(options.getRules())
+				.lexicon(options.getLexicon())
+				.build());
+		Builder<BytesRef> builder = new Builder<BytesRef>(FST.INPUT_TYPE.BYTE2, GreeklishDictionary.OUTPUTS);
+		IntsRefBuilder input = new IntsRefBuilder();
+		GreeklishTokens greeklishWords = new GreeklishTokens();
+		long words = 0;
+		for (String greekWord : greekWords) {
+			greeklishWords.clear();
+			if (!converter.convert(greekWord.toCharArray(), greekWord.length(), greeklishWords)) {
+				continue;
+			}
+			builder.add(Util.toUTF16(greekWord, input), encode(greeklishWords));
+			words++;
+		}
+		FST<BytesRef> fst = builder.finish();
+		if (fst == null) {
+			throw new IllegalArgumentException("The vocabulary has no greek words to convert");
+		}
+
+		Files.deleteIfExists(dictionary);
+		try (Directory directory = FSDirectory.open(dictionary.toAbsolutePath().getParent());
+				IndexOutput output = directory.createOutput(dictionary.getFileName().toString(), IOContext.DEFAULT)) {
+			CodecUtil.writeHeader(output, GreeklishDictionary.CODEC_NAME, GreeklishDictionary.VERSION_CURRENT);
+			output.writeString(GreeklishDictionary.buildOptions(options));
+			fst.save(output);
+			CodecUtil.writeFooter(output);
+		}
+		return words;
+	}
+
+	/**
+	 * Encodes the greeklish words as their number followed by the length and
+	 * the UTF-8 bytes of each word.
+	 */
+	private static BytesRef encode(GreeklishTokens greeklishWords) {
+		byte[] bytes = new byte[5 + greeklishWords.size() * 5
+				+ greeklishWords.charCount() * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR];
+		byte[] utf8 = new byte[0];
+		ByteArrayDataOutput output = new ByteArrayDataOutput(bytes);
+		try {
+			output.writeVInt(greeklishWords.size());
+			for (int i = 0; i < greeklishWords.size(); i++) {
+				int length = greeklishWords.length(i);
+				if (utf8.length < length * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR) {
+					utf8 = new byte[length * UnicodeUtil.MAX_UTF8_BYTES_PER_CHAR];
+				}
+				int utf8Length = UnicodeUtil.UTF16toUTF8(greeklishWords.buffer(), greeklishWords.offset(i),
+						length, utf8);
+				output.writeVInt(utf8Length);
+				output.writeBytes(utf8, 0, utf8Length);
+			}
+		} catch (IOException e) {
+			throw new AssertionError("Cannot happen for an array", e);
+		}
+		return new BytesRef(bytes, 0, output.getPosition());
+	}
+
+	/**
+	 * @return the setting and the value of a setting=value argument
+	 */
+	static String[] parseArgument(String argument) {
+		String[] setting = argument.split("=", 2);
+		if (setting.length != 2) {
+			throw new IllegalArgumentException("Expected a setting=value argument instead of [" + argument + "]");
+		}
+		return setting;
+	}
+
+	/**
+	 * Sets an option of the conversion from a command line argument.
+	 */
+	static void parseSetting(GreeklishOptions.Builder options, String setting, String value) {
+		switch (setting) {
+		case "max_expansions":
+			options.maxExpansions(Integer.parseInt(value));
+			break;
+		case "max_tokens_per_term":
+			options.maxTokensPerTerm(Integer.parseInt(value));
+			break;
+		case "greek_variants":
+			options.generateGreekVariants(Boolean.parseBoolean(value));
+			break;
+		case "weighted_expansions":
+			options.weights(Boolean.parseBoolean(value) ? GreeklishWeights.DEFAULT : null);
+			break;
+		case "greek_lexicon":
+			options.lexicon(new GreeklishLexicon.Registry().get(Paths.get(value)));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown setting [" + setting + "]");
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: GreeklishDictionaryBuilder <vocabulary> <dictionary>"
+					+ " [max_expansions=N] [max_tokens_per_term=N] [greek_variants=true|false]"
+					+ " [weighted_expansions=true|false] [greek_lexicon=<file>]");
+			System.exit(1);
+		}
+		GreeklishOptions.Builder options = GreeklishOptions.builder();
+		for (int i = 2; i < args.length; i++) {
+			String[] setting = parseArgument(args[i]);
+			parseSetting(options, setting[0], setting[1]);
+		}
+
+		List<String> vocabulary = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+		Path dictionary = Paths.get(args[1]);
+		long words = build(vocabulary, options.build(), dictionary);
+		System.out.println("Built [" + dictionary + "] with [" + words + "] greek words, ["
+				+ Files.size(dictionary) + "] bytes");
+	}
+}
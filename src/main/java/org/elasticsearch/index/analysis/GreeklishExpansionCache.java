@@ -0,0 +1,145 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+/**
+ * A bounded, concurrent LRU cache of the greeklish words that are generated
+ * from a greek token. Entries are keyed by the token and the settings that
+ * affect the conversion, so a single cache can be shared by all the filters
+ * of a node, whatever their settings.
+ */
+public class GreeklishExpansionCache {
+
+	private final Cache<Key, GreeklishTokens> cache;
+
+	private final long maximumSize;
+
+	/**
+	 * @param maximumSize the maximum number of cached tokens
+	 */
+	public GreeklishExpansionCache(long maximumSize) {
+		this.maximumSize = maximumSize;
+		this.cache = CacheBuilder.<Key, GreeklishTokens>builder()
+				.setMaximumWeight(maximumSize)
+				.build();
+	}
+
+	/**
+	 * @return the cached greeklish words, or null if the token is not cached.
+	 *         The returned tokens must not be modified.
+	 */
+	public GreeklishTokens get(String token, GreeklishOptions options) {
+		return cache.get(new Key(token, options));
+	}
+
+	/**
+	 * Caches the greeklish words of a token. The tokens must not be modified
+	 * after they are cached.
+	 */
+	public void put(String token, GreeklishOptions options, GreeklishTokens greeklishWords) {
+		cache.put(new Key(token, options), greeklishWords);
+	}
+
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	public int getCount() {
+		return cache.count();
+	}
+
+	public long getHits() {
+		return cache.stats().getHits();
+	}
+
+	public long getMisses() {
+		return cache.stats().getMisses();
+	}
+
+	public long getEvictions() {
+		return cache.stats().getEvictions();
+	}
+
+	/**
+	 * The expansion caches of a node. Filters that are configured with the
+	 * same cache size share the same cache.
+	 */
+	public static class Registry {
+		private final Map<Long, GreeklishExpansionCache> caches =
+				new ConcurrentHashMap<Long, GreeklishExpansionCache>();
+
+		/**
+		 * @return the cache of the given size, or null if the size disables
+		 *         caching.
+		 */
+		public GreeklishExpansionCache get(long maximumSize) {
+			if (maximumSize <= 0) {
+				return null;
+			}
+			return caches.computeIfAbsent(maximumSize, GreeklishExpansionCache::new);
+		}
+	}
+
+	/**
+	 * The token and the options that affect its greeklish words. The options
+	 * of the filters are interned, so the weights and the rules of equal
+	 * keys are usually the same instances and are compared by identity
+	 * first, and their hashes are computed once.
+	 */
+	private static final class Key {
+		private final String token;
+		private final int maxExpansions;
+		private final int maxTokensPerTerm;
+		private final boolean generateGreekVariants;
+		private final GreeklishWeights weights;
+		private final GreeklishDictionary dictionary;
+		private final GreeklishLexicon lexicon;
+		private final GreeklishRules rules;
+		private final int hashCode;
+
+		Key(String token, GreeklishOptions options) {
+			this.token = token;
+			this.maxExpansions = options.getMaxExpansions();
+			this.maxTokensPerTerm = options.getMaxTokensPerTerm();
+			this.generateGreekVariants = options.isGenerateGreekVariants();
+			this.weights = options.getWeights();
+			this.dictionary = options.getDictionary();
+			this.lexicon = options.getLexicon();
+			this.rules = options.getRules();
+			this.hashCode = 31 * (31 * (31 * (31 * (31 * (31 * (31 * token.hashCode() + maxExpansions)
+					+ maxTokensPerTerm)
+					+ (generateGreekVariants ? 1 : 0)) + Objects.hashCode(weights))
+					+ System.identityHashCode(dictionary)) + System.identityHashCode(lexicon))
+					+ rules.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return maxExpansions == other.maxExpansions
+					&& maxTokensPerTerm == other.maxTokensPerTerm
+					&& generateGreekVariants == other.generateGreekVariants
+					&& token.equals(other.token)
+					&& Objects.equals(weights, other.weights)
+					&& dictionary == other.dictionary
+					&& lexicon == other.lexicon
+					&& (rules == other.rules || rules.equals(other.rules));
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
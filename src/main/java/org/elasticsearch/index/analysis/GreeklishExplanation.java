@@ -0,0 +1,314 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * Explains how a single word goes through the stages of the filter: the
+ * normalization, the suffix and the variants of the reverse stemmer, the
+ * dictionary, the digraph substitution and the expansions of each variant,
+ * and the tokens that the filter finally emits, with the time that each
+ * stage took. It is meant for finding the words that are expensive to
+ * expand, so it does its work step by step and is not as fast as the
+ * filter.
+ */
+public final class GreeklishExplanation implements ToXContentObject {
+
+	private final String text;
+
+	private final GreeklishOptions.Mode mode;
+
+	/**
+	 * The normalized greek word, or null if the text is not greek.
+	 */
+	private String greekWord;
+
+	/**
+	 * The phonetic key of the text, in canonical mode.
+	 */
+	private String key;
+
+	private boolean stemmed;
+	private String suffix;
+	private List<String> greekVariants;
+	private long stemNanos;
+
+	private boolean dictionaryConfigured;
+	private List<String> dictionaryWords;
+	private long dictionaryNanos;
+
+	private final List<Variant> variants = new ArrayList<Variant>();
+
+	private final List<String> tokens = new ArrayList<String>();
+	private long duplicatesRemoved;
+	private long convertNanos;
+
+	private GreeklishExplanation(String text, GreeklishOptions.Mode mode) {
+		this.text = text;
+		this.mode = mode;
+	}
+
+	/**
+	 * Explains how a filter with the given options handles a word. The word
+	 * is normalized first, so it may be in any case and have accents.
+	 */
+	public static GreeklishExplanation explain(String text, GreeklishOptions options) {
+		GreeklishExplanation explanation = new GreeklishExplanation(text, options.getMode());
+		char[] normalized = new char[text.length()];
+		if (GreeklishConverter.normalizeGreekWord(text.toCharArray(), text.length(), normalized)) {
+			explanation.greekWord = new String(normalized);
+		}
+
+		if (options.getMode() == GreeklishOptions.Mode.CANONICAL) {
+			explanation.explainKey(normalized);
+		} else if (explanation.greekWord != null) {
+			explanation.explainExpansions(options);
+		}
+		return explanation;
+	}
+
+	private void explainKey(char[] normalized) {
+		char[] word = greekWord == null ? text.toCharArray() : normalized;
+		char[] keyBuffer = new char[GreeklishCanonicalizer.maxKeyLength(word.length)];
+		long start = System.nanoTime();
+		if (greekWord != null) {
+			key = new String(keyBuffer, 0, GreeklishCanonicalizer.foldGreek(word, word.length, keyBuffer));
+		} else if (GreeklishCanonicalizer.identifyLatinWord(word, word.length)) {
+			key = new String(keyBuffer, 0, GreeklishCanonicalizer.foldLatin(word, word.length, keyBuffer));
+		}
+		convertNanos = System.nanoTime() - start;
+	}
+
+	private void explainExpansions(GreeklishOptions options) {
+		long start;
+		if (options.isGenerateGreekVariants()) {
+			stemmed = true;
+			start = System.nanoTime();
+			GreekReverseStemmer reverseStemmer = new GreekReverseStemmer(options.getRules(), options.getLexicon());
+			suffix = reverseStemmer.matchSuffix(greekWord);
+			greekVariants = new ArrayList<String>(reverseStemmer.generateGreekVariants(greekWord));
+			stemNanos = System.nanoTime() - start;
+		} else {
+			greekVariants = Collections.singletonList(greekWord);
+		}
+
+		GreeklishTokens words = new GreeklishTokens();
+		if (options.getDictionary() != null) {
+			dictionaryConfigured = true;
+			GreeklishDictionary.Reader reader = options.getDictionary().reader();
+			start = System.nanoTime();
+			boolean found = reader.lookup(greekWord.toCharArray(), greekWord.length(), words);
+			dictionaryNanos = System.nanoTime() - start;
+			if (found) {
+				dictionaryWords = toList(words);
+			}
+		}
+
+		GreeklishRules rules = options.getRules();
+		GreeklishGenerator generator = new GreeklishGenerator(options.getMaxExpansions(), options.getWeights(),
+				rules);
+		for (String greekVariant : greekVariants) {
+			Variant variant = new Variant(greekVariant);
+			char[] word = greekVariant.toCharArray();
+			int length = rules.substituteDigraphs(word, word.length);
+			for (int i = 0; i < length; i++) {
+				variant.units.add(rules.unit(word[i]));
+				variant.possibleExpansions = multiply(variant.possibleExpansions,
+						rules.conversions(word[i]).length);
+			}
+
+			words.clear();
+			long truncations = generator.getTruncations();
+			start = System.nanoTime();
+			generator.generateGreeklishWords(Collections.singletonList(greekVariant), words);
+			variant.nanos = System.nanoTime() - start;
+			variant.truncated = generator.getTruncations() > truncations;
+			variant.expansions = toList(words);
+			variants.add(variant);
+		}
+
+		// the tokens of the filter, from a converter with the same options
+		GreeklishConverter converter = new GreeklishConverter(options);
+		words.clear();
+		start = System.nanoTime();
+		converter.convert(greekWord.toCharArray(), greekWord.length(), words);
+		convertNanos = System.nanoTime() - start;
+		tokens.addAll(toList(words));
+		duplicatesRemoved = converter.getRemovedDuplicates();
+	}
+
+	/**
+	 * @return the normalized greek word, or null if the text is not greek
+	 */
+	public String getGreekWord() {
+		return greekWord;
+	}
+
+	/**
+	 * @return the suffix of the word that its variants were generated from,
+	 *         or null if none matched
+	 */
+	public String getSuffix() {
+		return suffix;
+	}
+
+	/**
+	 * @return the greek words that were expanded, i.e. the word and its
+	 *         variants
+	 */
+	public List<String> getGreekVariants() {
+		return greekVariants;
+	}
+
+	/**
+	 * @return the explanations of the expansions of each greek variant
+	 */
+	public List<Variant> getVariants() {
+		return variants;
+	}
+
+	/**
+	 * @return the tokens that the filter emits for the word, besides the
+	 *         word itself
+	 */
+	public List<String> getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * @return the phonetic key of the word, in canonical mode
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.startObject();
+		builder.field("text", text);
+		builder.field("mode", mode.name().toLowerCase(Locale.ROOT));
+		builder.field("greek", greekWord != null);
+		if (greekWord != null) {
+			builder.field("normalized", greekWord);
+		}
+		if (mode == GreeklishOptions.Mode.CANONICAL) {
+			builder.field("key", key);
+			builder.field("took_nanos", convertNanos);
+			return builder.endObject();
+		}
+		if (greekWord == null) {
+			return builder.endObject();
+		}
+
+		if (stemmed) {
+			builder.startObject("stemmer");
+			builder.field("suffix", suffix);
+			builder.field("variants", greekVariants);
+			builder.field("took_nanos", stemNanos);
+			builder.endObject();
+		}
+		if (dictionaryConfigured) {
+			builder.startObject("dictionary");
+			builder.field("found", dictionaryWords != null);
+			if (dictionaryWords != null) {
+				builder.field("tokens", dictionaryWords);
+			}
+			builder.field("took_nanos", dictionaryNanos);
+			builder.endObject();
+		}
+		builder.startArray("variants");
+		for (Variant variant : variants) {
+			variant.toXContent(builder, params);
+		}
+		builder.endArray();
+
+		builder.field("tokens", tokens);
+		builder.field("duplicates_removed", duplicatesRemoved);
+		builder.field("took_nanos", convertNanos);
+		return builder.endObject();
+	}
+
+	private static List<String> toList(GreeklishTokens words) {
+		List<String> list = new ArrayList<String>(words.size());
+		for (int i = 0; i < words.size(); i++) {
+			list.add(new String(words.buffer(), words.offset(i), words.length(i)));
+		}
+		return list;
+	}
+
+	/**
+	 * @return the product, or Long.MAX_VALUE if it overflows
+	 */
+	static long multiply(long a, long b) {
+		try {
+			return Math.multiplyExact(a, b);
+		} catch (ArithmeticException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * How the rules expanded a greek variant.
+	 */
+	public static final class Variant implements ToXContentObject {
+		private final String word;
+		private final List<String> units = new ArrayList<String>();
+		private long possibleExpansions = 1;
+		private List<String> expansions;
+		private boolean truncated;
+		private long nanos;
+
+		private Variant(String word) {
+			this.word = word;
+		}
+
+		public String getWord() {
+			return word;
+		}
+
+		/**
+		 * @return the characters and digraphs of the word, after the
+		 *         digraphs are substituted
+		 */
+		public List<String> getUnits() {
+			return units;
+		}
+
+		/**
+		 * @return the number of greeklish words of the variant if
+		 *         max_expansions did not apply
+		 */
+		public long getPossibleExpansions() {
+			return possibleExpansions;
+		}
+
+		public List<String> getExpansions() {
+			return expansions;
+		}
+
+		/**
+		 * @return whether the expansions were cut at max_expansions
+		 */
+		public boolean isTruncated() {
+			return truncated;
+		}
+
+		@Override
+		public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+			builder.startObject();
+			builder.field("word", word);
+			builder.field("units", units);
+			builder.field("possible_expansions", possibleExpansions);
+			builder.field("expansions", expansions);
+			builder.field("truncated", truncated);
+			builder.field("took_nanos", nanos);
+			return builder.endObject();
+		}
+	}
+}
@@ -1,12 +1,9 @@
 package org.elasticsearch.index.analysis;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.Loggers;
 
@@ -35,28 +32,17 @@ public class GreeklishGenerator {
 	private static final String GK = "Κ";
 	private static final String NT = "Ν";
 
-	/**
-	 * Each digraph is replaced by a special capital Greek character.
-	 */
-	private final Map<String, String> digraphs = new HashMap<String, String>();
-
-	/**
-	 * This hash has keys all the possible conversions that can be applied and
-	 * values the strings that can replace the corresponding Greek character.
-	 */
-	private final Map<Character, String[]> conversions = new HashMap<Character, String[]>();
-
 	/**
 	 * The possible digraph cases.
 	 */
-	private static final String[][] digraphCases = new String[][] {
+	static final String[][] digraphCases = new String[][] {
 			{ "αι", AI }, { "ει", EI }, { "οι", OI }, { "ου", OY },
 			{ "ευ", EY }, { "αυ", AY }, { "μπ", MP }, { "γγ", GG },
 			{ "γκ", GK }, { "ντ", NT } };
 	/**
 	 * The possible string conversions for each case.
 	 */
-	private static final String[][] convertStrings = new String[][] {
+	static final String[][] convertStrings = new String[][] {
 			{ AI, "ai", "e" }, { EI, "ei", "i" }, { OI, "oi", "i" },
 			{ OY, "ou", "oy", "u" }, { EY, "eu", "ef", "ev", "ey" },
 			{ AY, "au", "af", "av", "ay" }, { MP, "mp", "b" },
@@ -69,28 +55,123 @@ public class GreeklishGenerator {
 			{ "φ", "f", "ph" }, { "χ", "x", "h", "ch" }, { "ψ", "ps" },
 			{ "ω", "w", "o", "v" } };
 
+	/**
+	 * The probability of each of the conversions of the convertStrings, in
+	 * the same order. They are used by the weighted expansions.
+	 */
+	static final double[][] convertWeights = new double[][] {
+			{ 0.6, 0.4 }, { 0.55, 0.45 }, { 0.55, 0.45 },
+			{ 0.75, 0.05, 0.2 }, { 0.4, 0.35, 0.2, 0.05 },
+			{ 0.4, 0.35, 0.2, 0.05 }, { 0.55, 0.45 },
+			{ 0.6, 0.4 }, { 0.6, 0.4 }, { 0.6, 0.4 },
+			{ 1 }, { 0.7, 0.3 }, { 1 }, { 1 },
+			{ 1 }, { 1 }, { 0.55, 0.45 }, { 1 },
+			{ 1 }, { 1 }, { 1 }, { 1 },
+			{ 1 }, { 0.55, 0.45 }, { 1 }, { 1 },
+			{ 1 }, { 1 }, { 1 }, { 0.6, 0.25, 0.15 },
+			{ 0.95, 0.05 }, { 0.6, 0.3, 0.1 }, { 1 },
+			{ 0.6, 0.35, 0.05 } };
+
+	/**
+	 * The word length and the number of search states above which the
+	 * buffers are dropped when the generator is released, so that a single
+	 * long word does not keep large buffers for the lifetime of a reused
+	 * token stream.
+	 */
+	static final int MAX_RETAINED_WORD_LENGTH = 256;
+	static final int MAX_RETAINED_STATES = 1024;
+
 	/**
 	 * The maximum greeklish expansions per greek token.
 	 */
 	private final int maxExpansions;
 
 	/**
-	 * A list of greeklish token per each greek word.
+	 * The digraphs and the conversions, compiled once per set of rules.
+	 */
+	private final GreeklishConversions conversions;
+
+	/**
+	 * The weighted conversions, or null if the greeklish words are expanded
+	 * breadth first.
+	 */
+	private final GreeklishConversions weightedConversions;
+
+	/**
+	 * The maximum greeklish expansions of the greek word that is processed,
+	 * at most maxExpansions.
+	 */
+	private int expansionLimit;
+
+	/**
+	 * The greeklish tokens of the greek word that is processed. They are
+	 * kept in a pool of character buffers that is reused between the words,
+	 * and only the first expansions buffers are in use.
+	 */
+	private char[][] expansions = new char[0][];
+
+	/**
+	 * The length of each greeklish token in the expansions pool.
 	 */
-	private final List<StringBuilder> perWordGreeklish;
+	private int[] expansionLengths = new int[0];
+
+	/**
+	 * The number of greeklish tokens of the greek word that is processed.
+	 */
+	private int expansionCount;
+
+	/**
+	 * Whether the greeklish words of the greek word that is processed were
+	 * cut at maxExpansions or at the budget of the greek words.
+	 */
+	private boolean truncated;
+
+	/**
+	 * The number of greek words whose greeklish words were cut at
+	 * maxExpansions or at the budget of the greek words.
+	 */
+	private long truncations;
+
+	/**
+	 * The states of the best first search of the weighted expansions. Each
+	 * state is the choice of a conversion for each character of the word,
+	 * kept in a flat array, the probability of the choices and the last
+	 * character whose choice differs from the state it was derived from.
+	 * They are reused between the words.
+	 */
+	private int[] stateChoices = new int[0];
+	private double[] stateScores = new double[0];
+	private int[] stateLastChanged = new int[0];
+	private int stateCount;
+
+	/**
+	 * The max heap of the states that are not expanded yet, ordered by their
+	 * probability.
+	 */
+	private int[] heap = new int[0];
+	private int heapSize;
 
 	/**
 	 * Keep the generated strings in a list. The populated list is
 	 * returned to the filter.
-	 * CopyOnWriteArrayList is used because it is thread safe and has the
-	 * ability to add components while a thread iterates over its elements.
 	 */
 	private final List<StringBuilder> greeklishList;
 
 	/**
-	 * Input token converted into String.
+	 * The StringBuilders of the greeklish list, reused between the calls.
+	 */
+	private final List<StringBuilder> greeklishPool;
+
+	/**
+	 * The generated tokens from which the greeklish list is populated.
 	 */
-	private char[] inputToken;
+	private final GreeklishTokens generatedTokens;
+
+	/**
+	 * Input token converted into an array of characters, with its digraphs
+	 * substituted. It is reused between the words.
+	 */
+	private char[] inputToken = new char[0];
 
 	/**
 	 * Input token converted into String without substitutions.
@@ -98,107 +179,527 @@ public class GreeklishGenerator {
 	 */
 	private String initialToken;
 
+	/**
+	 * The characters, after digraph substitution, that all the greek words
+	 * of a call start with, e.g. the stem of the reverse stemmer variants.
+	 */
+	private char[] stemToken = new char[0];
+
+	/**
+	 * The greeklish tokens of the shared stem, expanded once per call at the
+	 * limit of the first greek word, and whether they were cut at it.
+	 */
+	private final GreeklishTokens stemExpansions = new GreeklishTokens();
+	private int stemLimit;
+	private boolean stemTruncated;
+
 	// Constructor
 	public GreeklishGenerator(int maxExpansions) {
+		this(maxExpansions, null);
+	}
+
+	// Constructor
+	public GreeklishGenerator(int maxExpansions, GreeklishWeights weights) {
+		this(maxExpansions, weights, weights == null ? GreeklishRules.DEFAULT : weights.getRules());
+	}
+
+	// Constructor
+	public GreeklishGenerator(int maxExpansions, GreeklishWeights weights, GreeklishRules rules) {
+		if (weights != null && !weights.getRules().equals(rules)) {
+			throw new IllegalArgumentException("The expansion weights are not compiled with the same rules");
+		}
 
 		this.maxExpansions = maxExpansions;
 
-		this.greeklishList = new ArrayList<StringBuilder>();
+		this.conversions = rules.conversions();
 
-		this.perWordGreeklish = new CopyOnWriteArrayList<StringBuilder>();
+		this.weightedConversions = weights == null ? null : weights.conversions();
 
-		// populate digraphs
-		for (String[] digraphCase : digraphCases) {
-			digraphs.put(digraphCase[0], digraphCase[1]);
-		}
+		this.greeklishList = new ArrayList<StringBuilder>();
 
-		// populate conversions
-		for (String[] convertString : convertStrings) {
-			conversions.put(convertString[0].charAt(0),
-					Arrays.copyOfRange(convertString, 1, convertString.length));
-		}
+		this.greeklishPool = new ArrayList<StringBuilder>();
+
+		this.generatedTokens = new GreeklishTokens();
 	}
 
 	/**
 	 * Gets a list of greek words and generates the greeklish version of
 	 * each word.
+	 * The returned list and its StringBuilders are reused by the next call.
 	 * @param greekWords a list of greek words
 	 * @return a list of greeklish words
 	 */
 	public List<StringBuilder> generateGreeklishWords(final List<String> greekWords) {
+		generatedTokens.clear();
+		generateGreeklishWords(greekWords, generatedTokens);
+
 		greeklishList.clear();
-		for (String greekWord : greekWords) {
+		for (int i = 0; i < generatedTokens.size(); i++) {
+			if (greeklishPool.size() == greeklishList.size()) {
+				greeklishPool.add(new StringBuilder());
+			}
+			StringBuilder greeklishWord = greeklishPool.get(greeklishList.size());
+			greeklishWord.setLength(0);
+			greeklishWord.append(generatedTokens.buffer(), generatedTokens.offset(i),
+					generatedTokens.length(i));
+			greeklishList.add(greeklishWord);
+		}
+		return greeklishList;
+	}
 
-			perWordGreeklish.clear();
+	/**
+	 * Gets a list of greek words and appends the greeklish version of
+	 * each word to the greeklish tokens.
+	 * @param greekWords a list of greek words
+	 * @param greeklishWords the tokens to append the greeklish words to
+	 */
+	public void generateGreeklishWords(final List<String> greekWords, final GreeklishTokens greeklishWords) {
+		generateGreeklishWords(greekWords, greeklishWords, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets a list of greek words and appends at most maxTokens greeklish
+	 * words in total. Each greek word gets up to maxExpansions greeklish
+	 * words, but one is kept for each of the greek words after it, so when
+	 * the budget runs out the last words get only their most common
+	 * spelling, and the words that do not fit get none.
+	 * @param greekWords a list of greek words
+	 * @param greeklishWords the tokens to append the greeklish words to
+	 * @param maxTokens the maximum number of greeklish words to append
+	 */
+	public void generateGreeklishWords(final List<String> greekWords, final GreeklishTokens greeklishWords,
+			final int maxTokens) {
+		int remaining = maxTokens;
+		// the limits of the words only drop, so the first one is the largest
+		int stemLength = weightedConversions == null && greekWords.size() > 1 && maxTokens > 0
+				? expandStem(greekWords, Math.min(maxExpansions, Math.max(1, maxTokens - greekWords.size() + 1)))
+				: 0;
+		for (int word = 0; word < greekWords.size() && remaining > 0; word++) {
+			String greekWord = greekWords.get(word);
+
+			int laterWords = greekWords.size() - word - 1;
+			expansionLimit = Math.min(maxExpansions, Math.max(1, remaining - laterWords));
+
+			expansionCount = 0;
+
+			truncated = false;
 
 			initialToken = greekWord;
-			// Allocate space that is twice the length of the input token in
-			// order
-			// to cover
-			// worst case scenario where each Greek character is replaced by two
-			// latin characters
-			int allocatedSpace = 2 * greekWord.length();
 
-			for (String key : digraphs.keySet()) {
-				greekWord = greekWord.replaceAll(key, digraphs.get(key));
+			// Convert it to array of characters and replace its digraphs.
+			// The iterations of each character will take place through
+			// this array.
+			if (inputToken.length < greekWord.length()) {
+				inputToken = new char[greekWord.length()];
 			}
+			greekWord.getChars(0, greekWord.length(), inputToken, 0);
+			int length = conversions.substituteDigraphs(inputToken, greekWord.length());
 
-			// Convert it back to array of characters. The iterations of each
-			// character will take place through this array.
-			inputToken = greekWord.toCharArray();
+			if (weightedConversions != null) {
+				// Generate the most probable greeklish words
+				addMostProbable(length);
+			} else {
+				int start = 0;
+				if (stemLength > 0 && expansionLimit <= stemLimit) {
+					restoreStem();
+					start = stemLength;
+				}
+				// Iterate through the characters of the token and generate
+				// greeklish
+				// words
+				for (int i = start; i < length; i++) {
+					addCharacter(conversions.conversions(inputToken[i]));
+				}
+			}
 
-			// Iterate through the characters of the token and generate
-			// greeklish
-			// words
-			for (char greekChar : inputToken) {
-				addCharacter(conversions.get(greekChar), allocatedSpace);
+			for (int i = 0; i < expansionCount; i++) {
+				greeklishWords.add(expansions[i], 0, expansionLengths[i]);
+			}
+			remaining -= expansionCount;
+
+			if (truncated) {
+				truncations++;
 			}
-			greeklishList.addAll(perWordGreeklish);
 		}
-		return greeklishList;
+	}
+
+	/**
+	 * Expands the characters that all the greek words start with, after
+	 * their digraphs are substituted, so that the reverse stemmer variants
+	 * of a word expand their stem once and then only their suffixes. The
+	 * prefix is compared after the substitution, so a digraph that spans the
+	 * stem and the suffix, like the "ου" of "καλ-ο" and "καλ-ου", is left to
+	 * the suffixes.
+	 * @param greekWords the greek words
+	 * @param limit the largest limit of the greek words
+	 * @return the length of the shared prefix, or 0 if there is none
+	 */
+	private int expandStem(List<String> greekWords, int limit) {
+		int stemLength = -1;
+		for (String greekWord : greekWords) {
+			if (inputToken.length < greekWord.length()) {
+				inputToken = new char[greekWord.length()];
+			}
+			greekWord.getChars(0, greekWord.length(), inputToken, 0);
+			int length = conversions.substituteDigraphs(inputToken, greekWord.length());
+			if (stemLength < 0) {
+				if (stemToken.length < length) {
+					stemToken = new char[inputToken.length];
+				}
+				System.arraycopy(inputToken, 0, stemToken, 0, length);
+				stemLength = length;
+			} else {
+				int shared = 0;
+				while (shared < stemLength && shared < length && stemToken[shared] == inputToken[shared]) {
+					shared++;
+				}
+				stemLength = shared;
+			}
+			if (stemLength == 0) {
+				return 0;
+			}
+		}
+
+		expansionLimit = limit;
+		expansionCount = 0;
+		truncated = false;
+		initialToken = greekWords.get(0);
+		for (int i = 0; i < stemLength; i++) {
+			addCharacter(conversions.conversions(stemToken[i]));
+		}
+		stemExpansions.clear();
+		for (int i = 0; i < expansionCount; i++) {
+			stemExpansions.add(expansions[i], 0, expansionLengths[i]);
+		}
+		stemLimit = limit;
+		stemTruncated = truncated;
+		return stemLength;
+	}
+
+	/**
+	 * Starts the greeklish tokens of the greek word that is processed from
+	 * the expansions of the shared stem. The expansion is breadth first and
+	 * only appends new tokens after the existing ones, so the stem expanded
+	 * at a lower limit is the first expansions of the stem at the limit of
+	 * the first word.
+	 */
+	private void restoreStem() {
+		int stemCount = stemExpansions.size();
+		for (int i = 0; i < Math.min(stemCount, expansionLimit); i++) {
+			int token = newExpansion();
+			append(token, stemExpansions.buffer(), stemExpansions.offset(i), stemExpansions.length(i));
+		}
+		truncated = stemTruncated || stemCount > expansionLimit;
+	}
+
+	/**
+	 * @return the number of greek words whose greeklish words were cut at
+	 *         maxExpansions or at the budget of the greek words
+	 */
+	public long getTruncations() {
+		return truncations;
+	}
+
+	/**
+	 * Drops the buffers that grew beyond the retained capacities, keeping the
+	 * rest for the next words.
+	 */
+	void release() {
+		if (inputToken.length > MAX_RETAINED_WORD_LENGTH) {
+			inputToken = new char[0];
+		}
+		if (stemToken.length > MAX_RETAINED_WORD_LENGTH) {
+			stemToken = new char[0];
+		}
+		stemExpansions.release();
+		for (int i = 0; i < expansions.length; i++) {
+			if (expansions[i] != null && expansions[i].length > 2 * MAX_RETAINED_WORD_LENGTH) {
+				expansions[i] = null;
+			}
+		}
+		if (stateScores.length > MAX_RETAINED_STATES
+				|| stateChoices.length > MAX_RETAINED_STATES * MAX_RETAINED_WORD_LENGTH) {
+			stateChoices = new int[0];
+			stateScores = new double[0];
+			stateLastChanged = new int[0];
+			heap = new int[0];
+		}
+		stateCount = 0;
+		heapSize = 0;
+		greeklishList.clear();
+		if (greeklishPool.size() > GreeklishTokens.MAX_RETAINED_TOKENS) {
+			greeklishPool.clear();
+		}
+		generatedTokens.release();
+		initialToken = null;
+	}
+
+	/**
+	 * @return the memory used by the buffers, in bytes
+	 */
+	long ramBytesUsed() {
+		long bytes = RamUsageEstimator.sizeOf(inputToken) + RamUsageEstimator.sizeOf(stemToken)
+				+ stemExpansions.ramBytesUsed() + RamUsageEstimator.sizeOf(expansionLengths)
+				+ RamUsageEstimator.sizeOf(stateChoices) + RamUsageEstimator.sizeOf(stateScores)
+				+ RamUsageEstimator.sizeOf(stateLastChanged) + RamUsageEstimator.sizeOf(heap)
+				+ generatedTokens.ramBytesUsed();
+		for (char[] expansion : expansions) {
+			if (expansion != null) {
+				bytes += RamUsageEstimator.sizeOf(expansion);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Replaces the digraphs of a greek word with the substitute characters of
+	 * the built-in rules.
+	 * @see GreeklishRules#substituteDigraphs(char[], int)
+	 */
+	static int substituteDigraphs(char[] word, int length) {
+		return GreeklishRules.DEFAULT.substituteDigraphs(word, length);
+	}
+
+	/**
+	 * @return the greek digraph that a substitute character of the built-in
+	 *         rules stands for, or the character itself
+	 * @see GreeklishRules#unit(char)
+	 */
+	static String unit(char greekUnit) {
+		return GreeklishRules.DEFAULT.unit(greekUnit);
+	}
+
+	/**
+	 * @return the latin strings of the built-in rules that can replace a
+	 *         character or a digraph substitute, the most common one first,
+	 *         or null if it cannot be converted.
+	 * @see GreeklishRules#conversions(char)
+	 */
+	static String[] conversions(char greekChar) {
+		return GreeklishRules.DEFAULT.conversions(greekChar);
+	}
+
+	/**
+	 * Adds the most probable greeklish words of the word in the input
+	 * token, from the most probable one, until the limit of the word is
+	 * reached.
+	 * The greeklish words are found with a best first search over the
+	 * choices of the conversions: a state is expanded to the states that
+	 * take the next less probable conversion of one character, from the
+	 * last character that changed onwards, so each combination is reached
+	 * only once.
+	 *
+	 * @param length
+	 *            the length of the input token after digraph substitution
+	 */
+	private void addMostProbable(int length) {
+		stateCount = 0;
+		heapSize = 0;
+
+		int root = newState(length);
+		double score = 0;
+		for (int i = 0; i < length; i++) {
+			stateChoices[root * length + i] = 0;
+			score += weightedConversions.logWeights(inputToken[i])[0];
+		}
+		stateScores[root] = score;
+		stateLastChanged[root] = 0;
+		push(root);
+
+		while (heapSize > 0) {
+			if (expansionCount >= expansionLimit) {
+				logger.debug("Skipping for token [{}]", initialToken);
+				truncated = true;
+				break;
+			}
+			int state = pop();
+			int choices = state * length;
+
+			int token = newExpansion();
+			for (int i = 0; i < length; i++) {
+				append(token, weightedConversions.conversions(inputToken[i])[stateChoices[choices + i]]);
+			}
+
+			for (int i = stateLastChanged[state]; i < length; i++) {
+				int choice = stateChoices[choices + i];
+				double[] logWeights = weightedConversions.logWeights(inputToken[i]);
+				if (choice + 1 < logWeights.length) {
+					int next = newState(length);
+					System.arraycopy(stateChoices, choices, stateChoices, next * length, length);
+					stateChoices[next * length + i] = choice + 1;
+					stateScores[next] = stateScores[state] - logWeights[choice] + logWeights[choice + 1];
+					stateLastChanged[next] = i;
+					push(next);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the next state of the search.
+	 * @return the index of the new state
+	 */
+	private int newState(int length) {
+		if (stateCount == stateScores.length) {
+			int size = Math.max(16, stateCount * 2);
+			double[] grownScores = new double[size];
+			System.arraycopy(stateScores, 0, grownScores, 0, stateCount);
+			stateScores = grownScores;
+			int[] grownLastChanged = new int[size];
+			System.arraycopy(stateLastChanged, 0, grownLastChanged, 0, stateCount);
+			stateLastChanged = grownLastChanged;
+			int[] grownHeap = new int[size];
+			System.arraycopy(heap, 0, grownHeap, 0, heapSize);
+			heap = grownHeap;
+		}
+		if (stateChoices.length < (stateCount + 1) * length) {
+			int[] grownChoices = new int[stateScores.length * length];
+			System.arraycopy(stateChoices, 0, grownChoices, 0, stateCount * length);
+			stateChoices = grownChoices;
+		}
+		return stateCount++;
+	}
+
+	/**
+	 * @return true if the first state is more probable than the second one.
+	 *         States of the same probability are taken in the order that
+	 *         they were found, so the order of the words is deterministic.
+	 */
+	private boolean before(int state, int other) {
+		return stateScores[state] > stateScores[other]
+				|| (stateScores[state] == stateScores[other] && state < other);
+	}
+
+	private void push(int state) {
+		int i = heapSize++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(state, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = state;
+	}
+
+	private int pop() {
+		int top = heap[0];
+		int last = heap[--heapSize];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], last)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		if (heapSize > 0) {
+			heap[i] = last;
+		}
+		return top;
 	}
 
 	/**
 	 * Add the matching latin characters to the generated greeklish tokens for a
 	 * specific Greek character. For each different combination of latin
 	 * characters, a new token is generated.
+	 * The expansion is breadth first: the existing tokens are extended with
+	 * the most common latin characters, and the tokens with the alternative
+	 * characters are appended after them, until the limit of the word is
+	 * reached.
 	 *
 	 * @param convertStrings
 	 *            The latin characters that will be added to the tokens
-	 * @param bufferSize
-	 *            The size of the buffer that will be allocated in case of new
-	 *            StringBuilder
 	 */
-	private void addCharacter(String[] convertStrings, int bufferSize) {
-		// If the token list is empty, create a new StringBuilder and add the
+	private void addCharacter(String[] convertStrings) {
+		// If there are no tokens, create a new one for each of the
 		// latin characters
-		if (perWordGreeklish.isEmpty()) {
+		if (expansionCount == 0) {
 			for (String convertString : convertStrings) {
-				if (perWordGreeklish.size() >= maxExpansions) {
+				if (expansionCount >= expansionLimit) {
 					logger.debug("Skipping for token [{}]", initialToken);
+					truncated = true;
 					break;
 				}
-				StringBuilder greeklishWord = new StringBuilder(bufferSize);
-				greeklishWord.append(convertString);
-				perWordGreeklish.add(greeklishWord);
+				int token = newExpansion();
+				append(token, convertString);
 			}
 			// Add the latin characters to each saved greeklish token, and
 			// generate new ones
 			// when the combinations are more than one.
 		} else {
-			for (StringBuilder atoken : perWordGreeklish) {
-				for (String convertString : Arrays.copyOfRange(convertStrings,
-						1, convertStrings.length)) {
-					if (perWordGreeklish.size() >= maxExpansions) {
+			int existing = expansionCount;
+			for (int token = 0; token < existing; token++) {
+				for (int i = 1; i < convertStrings.length; i++) {
+					if (expansionCount >= expansionLimit) {
 						logger.debug("Skipping for token [{}]", initialToken);
+						truncated = true;
 						break;
 					}
-					StringBuilder newToken = new StringBuilder(atoken);
-					newToken.append(convertString);
-					perWordGreeklish.add(newToken);
+					int newToken = newExpansion();
+					append(newToken, expansions[token], expansionLengths[token]);
+					append(newToken, convertStrings[i]);
 				}
-				atoken.append(convertStrings[0]);
+				append(token, convertStrings[0]);
 			}
 		}
 	}
+
+	/**
+	 * Takes the next empty buffer of the pool.
+	 * @return the index of the new greeklish token
+	 */
+	private int newExpansion() {
+		if (expansionCount == expansions.length) {
+			int size = Math.max(4, expansionCount * 2);
+			char[][] grownExpansions = new char[size][];
+			System.arraycopy(expansions, 0, grownExpansions, 0, expansionCount);
+			expansions = grownExpansions;
+			int[] grownLengths = new int[size];
+			System.arraycopy(expansionLengths, 0, grownLengths, 0, expansionCount);
+			expansionLengths = grownLengths;
+		}
+		if (expansions[expansionCount] == null) {
+			// cover the worst case scenario where each Greek character
+			// is replaced by two latin characters
+			expansions[expansionCount] = new char[2 * inputToken.length];
+		}
+		expansionLengths[expansionCount] = 0;
+		return expansionCount++;
+	}
+
+	private void append(int token, String latin) {
+		int length = expansionLengths[token];
+		ensureCapacity(token, length + latin.length());
+		latin.getChars(0, latin.length(), expansions[token], length);
+		expansionLengths[token] = length + latin.length();
+	}
+
+	private void append(int token, char[] latin, int latinLength) {
+		append(token, latin, 0, latinLength);
+	}
+
+	private void append(int token, char[] latin, int latinOffset, int latinLength) {
+		int length = expansionLengths[token];
+		ensureCapacity(token, length + latinLength);
+		System.arraycopy(latin, latinOffset, expansions[token], length, latinLength);
+		expansionLengths[token] = length + latinLength;
+	}
+
+	private void ensureCapacity(int token, int capacity) {
+		char[] buffer = expansions[token];
+		if (buffer.length < capacity) {
+			char[] grown = new char[Math.max(capacity, 2 * buffer.length)];
+			System.arraycopy(buffer, 0, grown, 0, expansionLengths[token]);
+			expansions[token] = grown;
+		}
+	}
 }
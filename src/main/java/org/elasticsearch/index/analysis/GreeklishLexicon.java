@@ -0,0 +1,173 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.NoOutputs;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * A lexicon of the greek words that exist, used to keep only the variants
+ * of the reverse stemmer that are real words. The suffix rules are applied
+ * blindly, so e.g. "πορτασ" gets variants like "πορτεσ" but also forms that
+ * no one writes, and each of them would be expanded into greeklish words.
+ * The words are kept in a Lucene FST without outputs, which shares both
+ * their prefixes and their suffixes, so even a full list of greek word forms
+ * takes a few megabytes. A lexicon is built once per node from a word list
+ * and it is shared by all the filters that use the same file.
+ */
+public class GreeklishLexicon {
+
+	private final FST<Object> fst;
+
+	private final long words;
+
+	/**
+	 * A hash of the words, which identifies the lexicon that a dictionary
+	 * was built with.
+	 */
+	private final long checksum;
+
+	private GreeklishLexicon(FST<Object> fst, long words, long checksum) {
+		this.fst = fst;
+		this.words = words;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Builds a lexicon.
+	 *
+	 * @param words
+	 *            the greek words, in any case and with or without accents.
+	 *            Words that are not greek are skipped.
+	 * @return the lexicon of the words
+	 * @throws IllegalArgumentException
+	 *             if there are no greek words
+	 */
+	public static GreeklishLexicon build(Iterable<String> words) {
+		// the FST is keyed by the normalized words, in sorted order
+		TreeSet<String> greekWords = new TreeSet<String>();
+		char[] normalized = new char[0];
+		for (String word : words) {
+			word = word.trim();
+			if (normalized.length < word.length()) {
+				normalized = new char[word.length()];
+			}
+			if (GreeklishConverter.normalizeGreekWord(word.toCharArray(), word.length(), normalized)) {
+				greekWords.add(new String(normalized, 0, word.length()));
+			}
+		}
+		if (greekWords.isEmpty()) {
+			throw new IllegalArgumentException("The greek lexicon has no greek words");
+		}
+
+		NoOutputs outputs = NoOutputs.getSingleton();
+		Builder<Object> builder = new Builder<Object>(FST.INPUT_TYPE.BYTE2, outputs);
+		IntsRefBuilder input = new IntsRefBuilder();
+		try {
+			long checksum = 0;
+			for (String greekWord : greekWords) {
+				builder.add(Util.toUTF16(greekWord, input), outputs.getNoOutput());
+				checksum = 31 * checksum + greekWord.hashCode();
+			}
+			return new GreeklishLexicon(builder.finish(), greekWords.size(), checksum);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to build the greek lexicon", e);
+		}
+	}
+
+	/**
+	 * @return the number of words in the lexicon
+	 */
+	public long size() {
+		return words;
+	}
+
+	/**
+	 * @return a hash of the normalized words of the lexicon
+	 */
+	public long checksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return the memory used by the lexicon, in bytes
+	 */
+	public long ramBytesUsed() {
+		return fst.ramBytesUsed();
+	}
+
+	/**
+	 * @return a reader of the lexicon. A reader must be used by a single
+	 *         thread.
+	 */
+	public Reader reader() {
+		return new Reader();
+	}
+
+	/**
+	 * Looks up greek words in the lexicon. The arc of the reader is reused
+	 * between the lookups.
+	 */
+	public final class Reader {
+		private final FST.BytesReader bytesReader = fst.getBytesReader();
+		private final FST.Arc<Object> arc = new FST.Arc<Object>();
+
+		private Reader() {
+		}
+
+		/**
+		 * @param greekWord
+		 *            the characters of a normalized greek word
+		 * @param length
+		 *            the length of the greek word
+		 * @return true if the word is in the lexicon
+		 */
+		public boolean contains(char[] greekWord, int length) {
+			try {
+				fst.getFirstArc(arc);
+				for (int i = 0; i < length; i++) {
+					if (fst.findTargetArc(greekWord[i], arc, arc, bytesReader) == null) {
+						return false;
+					}
+				}
+				return arc.isFinal();
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to read the greek lexicon", e);
+			}
+		}
+	}
+
+	/**
+	 * The lexicons of a node. Filters that are configured with the same
+	 * word list share the same lexicon.
+	 */
+	public static class Registry {
+		private final Map<Path, GreeklishLexicon> lexicons = new ConcurrentHashMap<Path, GreeklishLexicon>();
+
+		/**
+		 * @return the lexicon of the word list file, built the first time
+		 *         that it is requested.
+		 * @throws IllegalArgumentException
+		 *             if the lexicon cannot be loaded
+		 */
+		public GreeklishLexicon get(Path path) {
+			return lexicons.computeIfAbsent(path.toAbsolutePath().normalize(), file -> {
+				try {
+					return build(Files.readAllLines(file, StandardCharsets.UTF_8));
+				} catch (IOException e) {
+					throw new IllegalArgumentException("Failed to load greek lexicon [" + file + "]", e);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,476 @@
+package org.elasticsearch.index.analysis;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The immutable options of a greeklish filter. They are parsed once by the
+ * filter factory and shared by all the token streams that it creates.
+ */
+public final class GreeklishOptions {
+
+	/**
+	 * The default maximum greeklish expansions per greek word.
+	 */
+	public static final int DEFAULT_MAX_EXPANSIONS = 20;
+
+	/**
+	 * The default budgets of the greeklish tokens of a greek token and of a
+	 * token stream, i.e. unlimited.
+	 */
+	public static final int DEFAULT_MAX_TOKENS_PER_TERM = Integer.MAX_VALUE;
+	public static final int DEFAULT_MAX_GENERATED_PER_FIELD = Integer.MAX_VALUE;
+
+	/**
+	 * The default lengths of the grams in autocomplete mode.
+	 */
+	public static final int DEFAULT_MIN_GRAM = 1;
+	public static final int DEFAULT_MAX_GRAM = 20;
+
+	/**
+	 * What the filter emits for a greek token.
+	 */
+	public enum Mode {
+		/**
+		 * The greek token and its greeklish tokens.
+		 */
+		EXPAND,
+		/**
+		 * A single phonetic key instead of a greek or greeklish token.
+		 */
+		CANONICAL,
+		/**
+		 * The distinct edge n-grams of the greek token and of its greeklish
+		 * tokens.
+		 */
+		AUTOCOMPLETE;
+
+		/**
+		 * @return the mode of a setting value
+		 * @throws IllegalArgumentException
+		 *             if the value is not a mode
+		 */
+		public static Mode fromString(String mode) {
+			for (Mode value : values()) {
+				if (value.name().equalsIgnoreCase(mode)) {
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Unknown greeklish mode [" + mode
+					+ "], expected [expand], [canonical] or [autocomplete]");
+		}
+	}
+
+	private final Mode mode;
+	private final int maxExpansions;
+	private final int maxTokensPerTerm;
+	private final int maxGeneratedPerField;
+	private final boolean generateGreekVariants;
+	private final GreeklishExpansionCache expansionCache;
+	private final boolean restoreState;
+	private final boolean normalizeGreek;
+	private final GreeklishWeights weights;
+	private final GreeklishDictionary dictionary;
+	private final GreeklishLexicon lexicon;
+	private final GreeklishStats stats;
+	private final GreeklishRules rules;
+	private final int minGram;
+	private final int maxGram;
+
+	/**
+	 * The options that these ones share everything with but the stats, so
+	 * that the interned options stay referenced while a filter uses them.
+	 */
+	private final GreeklishOptions shared;
+
+	private GreeklishOptions(Builder builder) {
+		this.mode = builder.mode;
+		this.maxExpansions = builder.maxExpansions;
+		this.maxTokensPerTerm = builder.maxTokensPerTerm;
+		this.maxGeneratedPerField = builder.maxGeneratedPerField;
+		this.generateGreekVariants = builder.generateGreekVariants;
+		this.expansionCache = builder.expansionCache;
+		this.restoreState = builder.restoreState;
+		this.normalizeGreek = builder.normalizeGreek;
+		this.weights = builder.weights;
+		this.dictionary = builder.dictionary;
+		this.lexicon = builder.lexicon;
+		this.stats = builder.stats;
+		this.rules = builder.rules;
+		this.minGram = builder.minGram;
+		this.maxGram = builder.maxGram;
+		this.shared = null;
+	}
+
+	private GreeklishOptions(GreeklishOptions options, GreeklishStats stats) {
+		this.mode = options.mode;
+		this.maxExpansions = options.maxExpansions;
+		this.maxTokensPerTerm = options.maxTokensPerTerm;
+		this.maxGeneratedPerField = options.maxGeneratedPerField;
+		this.generateGreekVariants = options.generateGreekVariants;
+		this.expansionCache = options.expansionCache;
+		this.restoreState = options.restoreState;
+		this.normalizeGreek = options.normalizeGreek;
+		this.weights = options.weights;
+		this.dictionary = options.dictionary;
+		this.lexicon = options.lexicon;
+		this.stats = stats;
+		this.rules = options.rules;
+		this.minGram = options.minGram;
+		this.maxGram = options.maxGram;
+		this.shared = options.shared != null ? options.shared : options;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return what the filter emits for a greek token
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the maximum greeklish expansions per greek word
+	 */
+	public int getMaxExpansions() {
+		return maxExpansions;
+	}
+
+	/**
+	 * @return the maximum greeklish tokens of a greek token, over all its
+	 *         variants
+	 */
+	public int getMaxTokensPerTerm() {
+		return maxTokensPerTerm;
+	}
+
+	/**
+	 * @return the maximum greeklish tokens of a token stream, after which
+	 *         each greek token gets only its most common spelling
+	 */
+	public int getMaxGeneratedPerField() {
+		return maxGeneratedPerField;
+	}
+
+	/**
+	 * @return whether the singular/plural variants of greek words are
+	 *         generated
+	 */
+	public boolean isGenerateGreekVariants() {
+		return generateGreekVariants;
+	}
+
+	/**
+	 * @return the node level expansion cache, or null if caching is disabled
+	 */
+	public GreeklishExpansionCache getExpansionCache() {
+		return expansionCache;
+	}
+
+	/**
+	 * @return whether the state of a greek token is restored for each
+	 *         generated token
+	 */
+	public boolean isRestoreState() {
+		return restoreState;
+	}
+
+	/**
+	 * @return whether uppercase, accented greek characters and final sigma
+	 *         are normalized by the filter itself
+	 */
+	public boolean isNormalizeGreek() {
+		return normalizeGreek;
+	}
+
+	/**
+	 * @return the probabilities of the conversions, or null if the greeklish
+	 *         words are not weighted
+	 */
+	public GreeklishWeights getWeights() {
+		return weights;
+	}
+
+	/**
+	 * @return the precompiled dictionary of greeklish words, or null if all
+	 *         the words are converted by the rules
+	 */
+	public GreeklishDictionary getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return the lexicon that the greek variants are checked against, or
+	 *         null if all the variants are kept
+	 */
+	public GreeklishLexicon getLexicon() {
+		return lexicon;
+	}
+
+	/**
+	 * @return the stats that the filters add their counts to, or null if
+	 *         they are not collected
+	 */
+	public GreeklishStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * @return the suffixes, digraphs and conversions of the filter
+	 */
+	public GreeklishRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return the minimum length of the grams in autocomplete mode
+	 */
+	public int getMinGram() {
+		return minGram;
+	}
+
+	/**
+	 * @return the maximum length of the grams in autocomplete mode
+	 */
+	public int getMaxGram() {
+		return maxGram;
+	}
+
+	/**
+	 * @return options that share everything with these ones but the stats
+	 */
+	public GreeklishOptions withStats(GreeklishStats stats) {
+		return new GreeklishOptions(this, stats);
+	}
+
+	public static final class Builder {
+		private Mode mode = Mode.EXPAND;
+		private int maxExpansions = DEFAULT_MAX_EXPANSIONS;
+		private int maxTokensPerTerm = DEFAULT_MAX_TOKENS_PER_TERM;
+		private int maxGeneratedPerField = DEFAULT_MAX_GENERATED_PER_FIELD;
+		private boolean generateGreekVariants = true;
+		private GreeklishExpansionCache expansionCache;
+		private boolean restoreState = true;
+		private boolean normalizeGreek = false;
+		private GreeklishWeights weights;
+		private GreeklishDictionary dictionary;
+		private GreeklishLexicon lexicon;
+		private GreeklishStats stats;
+		private GreeklishRules rules = GreeklishRules.DEFAULT;
+		private int minGram = DEFAULT_MIN_GRAM;
+		private int maxGram = DEFAULT_MAX_GRAM;
+
+		private Builder() {
+		}
+
+		public Builder mode(Mode mode) {
+			this.mode = mode;
+			return this;
+		}
+
+		public Builder maxExpansions(int maxExpansions) {
+			this.maxExpansions = maxExpansions;
+			return this;
+		}
+
+		public Builder maxTokensPerTerm(int maxTokensPerTerm) {
+			this.maxTokensPerTerm = maxTokensPerTerm;
+			return this;
+		}
+
+		public Builder maxGeneratedPerField(int maxGeneratedPerField) {
+			this.maxGeneratedPerField = maxGeneratedPerField;
+			return this;
+		}
+
+		public Builder generateGreekVariants(boolean generateGreekVariants) {
+			this.generateGreekVariants = generateGreekVariants;
+			return this;
+		}
+
+		public Builder expansionCache(GreeklishExpansionCache expansionCache) {
+			this.expansionCache = expansionCache;
+			return this;
+		}
+
+		public Builder restoreState(boolean restoreState) {
+			this.restoreState = restoreState;
+			return this;
+		}
+
+		public Builder normalizeGreek(boolean normalizeGreek) {
+			this.normalizeGreek = normalizeGreek;
+			return this;
+		}
+
+		public Builder weights(GreeklishWeights weights) {
+			this.weights = weights;
+			return this;
+		}
+
+		public Builder dictionary(GreeklishDictionary dictionary) {
+			this.dictionary = dictionary;
+			return this;
+		}
+
+		public Builder lexicon(GreeklishLexicon lexicon) {
+			this.lexicon = lexicon;
+			return this;
+		}
+
+		public Builder stats(GreeklishStats stats) {
+			this.stats = stats;
+			return this;
+		}
+
+		public Builder rules(GreeklishRules rules) {
+			this.rules = rules;
+			return this;
+		}
+
+		public Builder minGram(int minGram) {
+			this.minGram = minGram;
+			return this;
+		}
+
+		public Builder maxGram(int maxGram) {
+			this.maxGram = maxGram;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException
+		 *             if the budgets or the lengths of the grams are not
+		 *             valid, or if the dictionary was built with other
+		 *             options
+		 */
+		public GreeklishOptions build() {
+			if (maxTokensPerTerm < 1 || maxGeneratedPerField < 1) {
+				throw new IllegalArgumentException("Invalid greeklish budgets, max_tokens_per_term ["
+						+ maxTokensPerTerm + "] and max_generated_per_field [" + maxGeneratedPerField
+						+ "] must be positive");
+			}
+			if (minGram < 1 || maxGram < minGram) {
+				throw new IllegalArgumentException("Invalid greeklish grams, min_gram [" + minGram
+						+ "] must be positive and not greater than max_gram [" + maxGram + "]");
+			}
+			GreeklishOptions options = new GreeklishOptions(this);
+			if (dictionary != null) {
+				dictionary.checkOptions(options);
+			}
+			return options;
+		}
+	}
+
+	/**
+	 * The compiled options of the filters of a node, interned by their
+	 * content, so that the indices that are created with the same filter
+	 * settings, e.g. time based indices, share a single instance of the
+	 * rules and the weights instead of compiling their own. The options are
+	 * held weakly, so they are dropped once no filter factory refers to
+	 * them, however the factory was created, e.g. to validate a template.
+	 */
+	public static class Registry {
+		private final Map<Integer, List<Interned>> interned = new HashMap<Integer, List<Interned>>();
+
+		private final ReferenceQueue<GreeklishOptions> collected = new ReferenceQueue<GreeklishOptions>();
+
+		/**
+		 * @param options
+		 *            the options that were parsed from the filter settings,
+		 *            without stats
+		 * @return the interned options that are equal to the given ones
+		 */
+		public synchronized GreeklishOptions intern(GreeklishOptions options) {
+			purge();
+			int hashCode = contentHashCode(options);
+			List<Interned> entries = interned.computeIfAbsent(hashCode, h -> new ArrayList<Interned>(1));
+			for (Interned entry : entries) {
+				GreeklishOptions existing = entry.get();
+				if (existing != null && sameContent(existing, options)) {
+					return existing;
+				}
+			}
+			entries.add(new Interned(options, hashCode, collected));
+			return options;
+		}
+
+		/**
+		 * @return the number of distinct options that are referenced
+		 */
+		public synchronized int size() {
+			purge();
+			int size = 0;
+			for (List<Interned> entries : interned.values()) {
+				size += entries.size();
+			}
+			return size;
+		}
+
+		/**
+		 * Drops the entries of the options that were collected.
+		 */
+		private void purge() {
+			Reference<? extends GreeklishOptions> reference;
+			while ((reference = collected.poll()) != null) {
+				Interned entry = (Interned) reference;
+				List<Interned> entries = interned.get(entry.hashCode);
+				entries.remove(entry);
+				if (entries.isEmpty()) {
+					interned.remove(entry.hashCode);
+				}
+			}
+		}
+	}
+
+	private static final class Interned extends WeakReference<GreeklishOptions> {
+		private final int hashCode;
+
+		Interned(GreeklishOptions options, int hashCode, ReferenceQueue<GreeklishOptions> queue) {
+			super(options, queue);
+			this.hashCode = hashCode;
+		}
+	}
+
+	/**
+	 * The hash of the content of the options, without the stats, which
+	 * belong to a single filter. The shared node level components are
+	 * hashed by identity, since their registries already intern them.
+	 */
+	private static int contentHashCode(GreeklishOptions options) {
+		return Objects.hash(options.mode, options.maxExpansions, options.maxTokensPerTerm,
+				options.maxGeneratedPerField, options.generateGreekVariants,
+				System.identityHashCode(options.expansionCache), options.restoreState, options.normalizeGreek,
+				options.weights, System.identityHashCode(options.dictionary),
+				System.identityHashCode(options.lexicon), options.rules, options.minGram, options.maxGram);
+	}
+
+	/**
+	 * @return whether the options have the same content, without the stats
+	 */
+	private static boolean sameContent(GreeklishOptions options, GreeklishOptions other) {
+		return options.mode == other.mode
+				&& options.maxExpansions == other.maxExpansions
+				&& options.maxTokensPerTerm == other.maxTokensPerTerm
+				&& options.maxGeneratedPerField == other.maxGeneratedPerField
+				&& options.generateGreekVariants == other.generateGreekVariants
+				&& options.expansionCache == other.expansionCache
+				&& options.restoreState == other.restoreState
+				&& options.normalizeGreek == other.normalizeGreek
+				&& Objects.equals(options.weights, other.weights)
+				&& options.dictionary == other.dictionary
+				&& options.lexicon == other.lexicon
+				&& options.rules.equals(other.rules)
+				&& options.minGram == other.minGram
+				&& options.maxGram == other.maxGram;
+	}
+}
@@ -0,0 +1,364 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rules of the filter, i.e. the suffixes of the reverse stemmer and the
+ * digraphs and latin conversions of the greeklish generator, compiled in
+ * lookup tables. The built-in rules can be overridden by rules that are
+ * loaded from files in the config directory, e.g. for the suffixes
+ * <pre>
+ * ματοσ => μα, ματων, ματα
+ * </pre>
+ * and for the conversions of characters and digraphs
+ * <pre>
+ * φ => f, ph
+ * ου => ou, u
+ * </pre>
+ * A rule replaces the built-in rule of the same suffix, character or
+ * digraph, and a suffix or digraph without any replacements is removed.
+ * The rules are compiled once per filter factory and shared by all its
+ * token streams.
+ */
+public final class GreeklishRules {
+
+	/**
+	 * The built-in rules.
+	 */
+	public static final GreeklishRules DEFAULT = new GreeklishRules(GreekReverseStemmer.suffixStrings,
+			GreeklishGenerator.digraphCases, GreeklishGenerator.convertStrings, GreeklishGenerator.convertWeights);
+
+	private static final String SEPARATOR = "=>";
+
+	/**
+	 * The characters that substitute the digraphs, i.e. the uppercase Greek
+	 * letters, which the generator never sees otherwise.
+	 */
+	private static final char FIRST_SUBSTITUTE = 'Α';
+	private static final char LAST_SUBSTITUTE = 'Ω';
+
+	private final String[][] suffixStrings;
+	private final String[][] digraphCases;
+	private final String[][] convertStrings;
+	private final double[][] convertWeights;
+
+	private final GreekSuffixTrie suffixes;
+	private final GreeklishConversions conversions;
+	private final int hashCode;
+
+	/**
+	 * @param convertWeights
+	 *            the built-in weight of each of the strings of the
+	 *            convertStrings rows
+	 */
+	private GreeklishRules(String[][] suffixStrings, String[][] digraphCases, String[][] convertStrings,
+			double[][] convertWeights) {
+		this.suffixStrings = suffixStrings;
+		this.digraphCases = digraphCases;
+		this.convertStrings = convertStrings;
+		this.convertWeights = convertWeights;
+		this.suffixes = new GreekSuffixTrie(suffixStrings);
+		this.conversions = new GreeklishConversions(digraphCases, convertStrings);
+		this.hashCode = 31 * (31 * Arrays.deepHashCode(suffixStrings) + Arrays.deepHashCode(digraphCases))
+				+ Arrays.deepHashCode(convertStrings);
+	}
+
+	/**
+	 * Parses the rules that override the built-in ones, e.g. the lines of
+	 * files in the config directory.
+	 *
+	 * @param suffixRules
+	 *            the suffix rules, or null to keep the built-in ones
+	 * @param conversionRules
+	 *            the conversion rules, or null to keep the built-in ones
+	 * @return the built-in rules overridden by the given ones
+	 * @throws IllegalArgumentException
+	 *             if a rule is not valid
+	 */
+	public static GreeklishRules parse(List<String> suffixRules, List<String> conversionRules) {
+		if (suffixRules == null && conversionRules == null) {
+			return DEFAULT;
+		}
+		String[][] suffixStrings = DEFAULT.suffixStrings;
+		if (suffixRules != null) {
+			Map<String, List<String>> rows = rows(DEFAULT.suffixStrings, null);
+			override(rows, suffixRules, "suffix");
+			suffixStrings = table(rows);
+		}
+
+		String[][] digraphCases = DEFAULT.digraphCases;
+		String[][] convertStrings = DEFAULT.convertStrings;
+		double[][] convertWeights = DEFAULT.convertWeights;
+		if (conversionRules != null) {
+			Map<String, List<String>> rows = rows(DEFAULT.convertStrings, DEFAULT.digraphCases);
+			override(rows, conversionRules, "conversion");
+
+			// the digraphs keep their built-in substitutes, the new ones
+			// take the free uppercase letters
+			List<String[]> digraphs = new ArrayList<String[]>();
+			char nextSubstitute = FIRST_SUBSTITUTE;
+			for (String greek : rows.keySet()) {
+				if (greek.length() == 1) {
+					continue;
+				}
+				String substitute = DEFAULT.substitute(greek);
+				while (substitute == null) {
+					if (nextSubstitute > LAST_SUBSTITUTE) {
+						throw new IllegalArgumentException("Too many digraphs in the conversion rules");
+					}
+					String candidate = String.valueOf(nextSubstitute++);
+					// U+03A2 is not assigned, and the built-in substitutes are taken
+					if (Character.isLetter(candidate.charAt(0))
+							&& DEFAULT.unit(candidate.charAt(0)).equals(candidate)) {
+						substitute = candidate;
+					}
+				}
+				digraphs.add(new String[] { greek, substitute });
+			}
+			digraphCases = digraphs.toArray(new String[digraphs.size()][]);
+
+			Map<String, List<String>> substituted = new LinkedHashMap<String, List<String>>();
+			for (Map.Entry<String, List<String>> row : rows.entrySet()) {
+				String greek = row.getKey();
+				for (String[] digraph : digraphCases) {
+					if (digraph[0].equals(greek)) {
+						greek = digraph[1];
+					}
+				}
+				substituted.put(greek, row.getValue());
+			}
+			convertStrings = table(substituted);
+
+			// the rows that are not overridden keep their built-in weights
+			convertWeights = new double[convertStrings.length][];
+			for (int row = 0; row < convertStrings.length; row++) {
+				convertWeights[row] = DEFAULT.builtInWeights(convertStrings[row]);
+			}
+		}
+		return new GreeklishRules(suffixStrings, digraphCases, convertStrings, convertWeights);
+	}
+
+	/**
+	 * @return the rows of a table keyed by their greek string, with the
+	 *         substitutes of the digraphs replaced by the digraphs
+	 */
+	private static Map<String, List<String>> rows(String[][] table, String[][] digraphCases) {
+		Map<String, List<String>> rows = new LinkedHashMap<String, List<String>>();
+		for (String[] row : table) {
+			String greek = row[0];
+			if (digraphCases != null) {
+				for (String[] digraph : digraphCases) {
+					if (digraph[1].equals(greek)) {
+						greek = digraph[0];
+					}
+				}
+			}
+			rows.put(greek, Arrays.asList(row).subList(1, row.length));
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the rows of a table, each with its greek string first
+	 */
+	private static String[][] table(Map<String, List<String>> rows) {
+		String[][] table = new String[rows.size()][];
+		int i = 0;
+		for (Map.Entry<String, List<String>> row : rows.entrySet()) {
+			table[i] = new String[row.getValue().size() + 1];
+			table[i][0] = row.getKey();
+			for (int j = 0; j < row.getValue().size(); j++) {
+				table[i][j + 1] = row.getValue().get(j);
+			}
+			i++;
+		}
+		return table;
+	}
+
+	/**
+	 * Applies the rules to the rows of a table.
+	 */
+	private static void override(Map<String, List<String>> rows, List<String> lines, String kind) {
+		boolean conversion = "conversion".equals(kind);
+		for (String line : lines) {
+			String rule = line.trim();
+			if (rule.isEmpty() || rule.startsWith("#")) {
+				continue;
+			}
+			int separator = rule.indexOf(SEPARATOR);
+			if (separator < 0) {
+				throw new IllegalArgumentException("Invalid " + kind + " rule [" + line + "], expected ["
+						+ SEPARATOR + "]");
+			}
+			String greek = rule.substring(0, separator).trim();
+			if (!GreeklishConverter.identifyGreekWord(greek.toCharArray(), greek.length())
+					|| (conversion && greek.length() > 2)) {
+				throw new IllegalArgumentException("Invalid " + kind + " rule [" + line + "], [" + greek
+						+ "] is not a greek lowercase " + (conversion ? "character or digraph" : "suffix"));
+			}
+			List<String> replacements = new ArrayList<String>();
+			for (String replacement : rule.substring(separator + SEPARATOR.length()).split(",")) {
+				replacement = replacement.trim();
+				if (replacement.isEmpty()) {
+					continue;
+				}
+				boolean valid = conversion
+						? GreeklishCanonicalizer.identifyLatinWord(replacement.toCharArray(), replacement.length())
+						: GreeklishConverter.identifyGreekWord(replacement.toCharArray(), replacement.length());
+				if (!valid) {
+					throw new IllegalArgumentException("Invalid " + kind + " rule [" + line + "], [" + replacement
+							+ "] is not " + (conversion ? "latin" : "greek") + " lowercase");
+				}
+				replacements.add(replacement);
+			}
+			if (!replacements.isEmpty()) {
+				rows.put(greek, Collections.unmodifiableList(replacements));
+			} else if (conversion && greek.length() == 1) {
+				throw new IllegalArgumentException("Invalid " + kind + " rule [" + line
+						+ "], a character must have at least one conversion");
+			} else {
+				rows.remove(greek);
+			}
+		}
+	}
+
+	/**
+	 * @return the built-in weights of a row of conversions, or equal weights
+	 *         if the row is not a built-in one
+	 */
+	private double[] builtInWeights(String[] convertString) {
+		for (int row = 0; row < convertStrings.length; row++) {
+			if (Arrays.equals(convertStrings[row], convertString)) {
+				return convertWeights[row];
+			}
+		}
+		double[] weights = new double[convertString.length - 1];
+		Arrays.fill(weights, 1);
+		return weights;
+	}
+
+	/**
+	 * @return the substitute of a digraph, or null if it is not a digraph
+	 */
+	private String substitute(String digraph) {
+		for (String[] digraphCase : digraphCases) {
+			if (digraphCase[0].equals(digraph)) {
+				return digraphCase[1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the suffixes of the reverse stemmer
+	 */
+	GreekSuffixTrie suffixes() {
+		return suffixes;
+	}
+
+	/**
+	 * @return the conversions of the greeklish generator, without weights
+	 */
+	GreeklishConversions conversions() {
+		return conversions;
+	}
+
+	/**
+	 * Replaces the digraphs of a greek word with their substitute characters.
+	 * @see GreeklishConversions#substituteDigraphs(char[], int)
+	 */
+	int substituteDigraphs(char[] word, int length) {
+		return conversions.substituteDigraphs(word, length);
+	}
+
+	/**
+	 * @return the latin strings that can replace a character or a digraph
+	 *         substitute, the most common one first, or null if it cannot be
+	 *         converted.
+	 */
+	String[] conversions(char greekUnit) {
+		return conversions.conversions(greekUnit);
+	}
+
+	/**
+	 * @return the greek digraph that a substitute character stands for, or
+	 *         the character itself if it is not a substitute
+	 */
+	String unit(char greekUnit) {
+		for (String[] digraphCase : digraphCases) {
+			if (digraphCase[1].charAt(0) == greekUnit) {
+				return digraphCase[0];
+			}
+		}
+		return String.valueOf(greekUnit);
+	}
+
+	/**
+	 * Compiles the conversions with their probabilities.
+	 *
+	 * @param rules
+	 *            the weights of the latin strings of the greek characters
+	 *            and digraphs that override the built-in probabilities
+	 * @throws IllegalArgumentException
+	 *             if a rule is not about a greek character or digraph
+	 */
+	GreeklishConversions weightedConversions(Map<String, Map<String, Double>> rules) {
+		String[][] weightedStrings = new String[convertStrings.length][];
+		double[][] weights = new double[convertStrings.length][];
+		int overridden = 0;
+		for (int row = 0; row < convertStrings.length; row++) {
+			String greek = unit(convertStrings[row][0].charAt(0));
+			Map<String, Double> rule = rules.get(greek);
+			if (rule == null) {
+				weightedStrings[row] = convertStrings[row];
+				weights[row] = convertWeights[row];
+				continue;
+			}
+			overridden++;
+			weightedStrings[row] = new String[rule.size() + 1];
+			weightedStrings[row][0] = convertStrings[row][0];
+			weights[row] = new double[rule.size()];
+			int i = 0;
+			for (Map.Entry<String, Double> latin : rule.entrySet()) {
+				weightedStrings[row][i + 1] = latin.getKey();
+				weights[row][i++] = latin.getValue();
+			}
+		}
+		if (overridden < rules.size()) {
+			for (String greek : rules.keySet()) {
+				if (!GreeklishConverter.identifyGreekWord(greek.toCharArray(), greek.length())
+						|| greek.length() > 2 || (greek.length() == 2
+								&& conversions.digraph(greek.charAt(0), greek.charAt(1)) == 0)) {
+					throw new IllegalArgumentException("Invalid expansion weights rule for [" + greek
+							+ "], it is not a greek lowercase character or digraph");
+				}
+			}
+		}
+		return new GreeklishConversions(digraphCases, weightedStrings, weights);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof GreeklishRules)) {
+			return false;
+		}
+		GreeklishRules other = (GreeklishRules) o;
+		return hashCode == other.hashCode
+				&& Arrays.deepEquals(suffixStrings, other.suffixStrings)
+				&& Arrays.deepEquals(digraphCases, other.digraphCases)
+				&& Arrays.deepEquals(convertStrings, other.convertStrings);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
@@ -0,0 +1,271 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * The counters of the work that the greeklish filters of a configured filter
+ * did. They are striped, so the filters of many threads can add to them
+ * without contention, and each filter adds its own counts once per token
+ * stream rather than once per token. They are sent to the node that reports
+ * the stats of a cluster.
+ */
+public final class GreeklishStats implements ToXContentFragment, Writeable {
+
+	private final LongAdder tokensInspected = new LongAdder();
+	private final LongAdder greekTokens = new LongAdder();
+	private final LongAdder greekVariants = new LongAdder();
+	private final LongAdder greeklishTokens = new LongAdder();
+	private final LongAdder truncations = new LongAdder();
+	private final LongAdder duplicatesRemoved = new LongAdder();
+	private final LongAdder convertNanos = new LongAdder();
+
+	// Constructor
+	public GreeklishStats() {
+	}
+
+	public GreeklishStats(StreamInput in) throws IOException {
+		tokensInspected.add(in.readVLong());
+		greekTokens.add(in.readVLong());
+		greekVariants.add(in.readVLong());
+		greeklishTokens.add(in.readVLong());
+		truncations.add(in.readVLong());
+		duplicatesRemoved.add(in.readVLong());
+		convertNanos.add(in.readVLong());
+	}
+
+	@Override
+	public void writeTo(StreamOutput out) throws IOException {
+		out.writeVLong(getTokensInspected());
+		out.writeVLong(getGreekTokens());
+		out.writeVLong(getGreekVariants());
+		out.writeVLong(getGreeklishTokens());
+		out.writeVLong(getTruncations());
+		out.writeVLong(getDuplicatesRemoved());
+		out.writeVLong(getConvertNanos());
+	}
+
+	/**
+	 * @return the number of tokens that the filters inspected
+	 */
+	public long getTokensInspected() {
+		return tokensInspected.sum();
+	}
+
+	/**
+	 * @return the number of greek tokens that were converted
+	 */
+	public long getGreekTokens() {
+		return greekTokens.sum();
+	}
+
+	/**
+	 * @return the number of greek variants that the reverse stemmer generated
+	 */
+	public long getGreekVariants() {
+		return greekVariants.sum();
+	}
+
+	/**
+	 * @return the number of greeklish tokens that were emitted
+	 */
+	public long getGreeklishTokens() {
+		return greeklishTokens.sum();
+	}
+
+	/**
+	 * @return the number of greek words, i.e. tokens or their variants, whose
+	 *         greeklish words were cut at max_expansions
+	 */
+	public long getTruncations() {
+		return truncations.sum();
+	}
+
+	/**
+	 * @return the number of duplicate greeklish words that were not emitted
+	 */
+	public long getDuplicatesRemoved() {
+		return duplicatesRemoved.sum();
+	}
+
+	/**
+	 * @return the time that the conversion of the greek tokens took
+	 */
+	public long getConvertNanos() {
+		return convertNanos.sum();
+	}
+
+	/**
+	 * Adds the counts of a filter and resets them.
+	 */
+	void add(Counts counts) {
+		tokensInspected.add(counts.tokensInspected);
+		greekTokens.add(counts.greekTokens);
+		greekVariants.add(counts.greekVariants);
+		greeklishTokens.add(counts.greeklishTokens);
+		truncations.add(counts.truncations);
+		duplicatesRemoved.add(counts.duplicatesRemoved);
+		convertNanos.add(counts.convertNanos);
+		counts.reset();
+	}
+
+	/**
+	 * Adds the counters of other stats, e.g. to sum the stats of a node.
+	 */
+	void add(GreeklishStats other) {
+		tokensInspected.add(other.getTokensInspected());
+		greekTokens.add(other.getGreekTokens());
+		greekVariants.add(other.getGreekVariants());
+		greeklishTokens.add(other.getGreeklishTokens());
+		truncations.add(other.getTruncations());
+		duplicatesRemoved.add(other.getDuplicatesRemoved());
+		convertNanos.add(other.getConvertNanos());
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.field("tokens_inspected", getTokensInspected());
+		builder.field("greek_tokens", getGreekTokens());
+		builder.field("greek_variants", getGreekVariants());
+		builder.field("greeklish_tokens", getGreeklishTokens());
+		builder.field("truncations", getTruncations());
+		builder.field("duplicates_removed", getDuplicatesRemoved());
+		builder.field("convert_time_in_nanos", getConvertNanos());
+		return builder;
+	}
+
+	/**
+	 * The counts of a single filter. They are plain fields, since a filter is
+	 * used by a single thread, and they are added to the shared stats when
+	 * the filter reaches the end of its token stream.
+	 */
+	static final class Counts {
+		long tokensInspected;
+		long greekTokens;
+		long greekVariants;
+		long greeklishTokens;
+		long truncations;
+		long duplicatesRemoved;
+		long convertNanos;
+
+		void reset() {
+			tokensInspected = 0;
+			greekTokens = 0;
+			greekVariants = 0;
+			greeklishTokens = 0;
+			truncations = 0;
+			duplicatesRemoved = 0;
+			convertNanos = 0;
+		}
+	}
+
+	/**
+	 * The stats of a node, per index and per configured filter. Filters that
+	 * are configured with the same name in the same index share the same
+	 * stats, even if the index is reopened.
+	 */
+	public static class Registry implements ToXContentFragment, Writeable {
+		private final Map<String, Map<String, GreeklishStats>> indices =
+				new ConcurrentHashMap<String, Map<String, GreeklishStats>>();
+
+		/**
+		 * The stats of the filters of the indices that were removed.
+		 */
+		private final GreeklishStats removed;
+
+		// Constructor
+		public Registry() {
+			this.removed = new GreeklishStats();
+		}
+
+		/**
+		 * Reads the stats of the registry of another node.
+		 */
+		public Registry(StreamInput in) throws IOException {
+			this.removed = new GreeklishStats(in);
+			int size = in.readVInt();
+			for (int i = 0; i < size; i++) {
+				indices.put(in.readString(), new ConcurrentHashMap<String, GreeklishStats>(
+						in.readMap(StreamInput::readString, GreeklishStats::new)));
+			}
+		}
+
+		@Override
+		public void writeTo(StreamOutput out) throws IOException {
+			removed.writeTo(out);
+			// a snapshot, since the indices may change while it is written
+			Map<String, Map<String, GreeklishStats>> indices = new TreeMap<>(this.indices);
+			out.writeVInt(indices.size());
+			for (Map.Entry<String, Map<String, GreeklishStats>> index : indices.entrySet()) {
+				out.writeString(index.getKey());
+				out.writeMap(new TreeMap<>(index.getValue()), StreamOutput::writeString,
+						(o, stats) -> stats.writeTo(o));
+			}
+		}
+
+		/**
+		 * @return the stats of a filter, created the first time that they
+		 *         are requested.
+		 */
+		public GreeklishStats get(String index, String filter) {
+			return indices.computeIfAbsent(index, i -> new ConcurrentHashMap<String, GreeklishStats>())
+					.computeIfAbsent(filter, f -> new GreeklishStats());
+		}
+
+		/**
+		 * Removes the stats of the filters of an index, keeping their counts
+		 * in the total of the node.
+		 */
+		public void remove(String index) {
+			Map<String, GreeklishStats> filters = indices.remove(index);
+			if (filters != null) {
+				for (GreeklishStats stats : filters.values()) {
+					removed.add(stats);
+				}
+			}
+		}
+
+		/**
+		 * @return the sum of the stats of all the filters of the node,
+		 *         including the ones of the removed indices
+		 */
+		public GreeklishStats total() {
+			GreeklishStats total = new GreeklishStats();
+			total.add(removed);
+			for (Map<String, GreeklishStats> filters : indices.values()) {
+				for (GreeklishStats stats : filters.values()) {
+					total.add(stats);
+				}
+			}
+			return total;
+		}
+
+		@Override
+		public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+			builder.startObject("total");
+			total().toXContent(builder, params);
+			builder.endObject();
+			builder.startObject("indices");
+			for (Map.Entry<String, Map<String, GreeklishStats>> index : new TreeMap<>(indices).entrySet()) {
+				builder.startObject(index.getKey());
+				for (Map.Entry<String, GreeklishStats> filter : new TreeMap<>(index.getValue()).entrySet()) {
+					builder.startObject(filter.getKey());
+					filter.getValue().toXContent(builder, params);
+					builder.endObject();
+				}
+				builder.endObject();
+			}
+			builder.endObject();
+			return builder;
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package org.elasticsearch.index.analysis;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Stack;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
@@ -19,7 +17,12 @@ import org.elasticsearch.common.logging.Loggers;
  * The generated tokens will have the same position and the same offset with the
  * original Greek tokens, and their type will be {@code greeklish_word}.
  * This filters acts <b>only on Greek lowercase characters</b> and for this reason
- * it should be applied after lowercase filter for Greek language.
+ * it should be applied after lowercase filter for Greek language, unless it
+ * normalizes the Greek characters itself.
+ * By default the state of the Greek token is captured and restored for each
+ * generated token. When restoring the state is disabled, only the term, the
+ * type and the position increment of the generated tokens are set, and the
+ * rest of the attributes are left as they were for the Greek token.
  */
 public class GreeklishTokenFilter extends TokenFilter {
 	private static final Logger logger =
@@ -33,9 +36,33 @@ public class GreeklishTokenFilter extends TokenFilter {
 	/**
 	 * The greeklish word buffer
 	 */
-	private Stack<char[]> greeklishWords = new Stack<char[]>();
+	private final GreeklishTokens greeklishWords = new GreeklishTokens();
+
+	/**
+	 * The number of greeklish words in the buffer that have not been
+	 * emitted yet. They are emitted from the last one to the first one.
+	 */
+	private int pendingWords;
 
 	private AttributeSource.State current;
+
+	/**
+	 * The maximum number of greeklish tokens of the token stream. After it,
+	 * each Greek token gets only its most common spelling.
+	 */
+	private final int maxGeneratedPerField;
+
+	/**
+	 * The number of greeklish tokens that were generated since the token
+	 * stream was reset.
+	 */
+	private int generatedTokens;
+
+	/**
+	 * Whether the state of the Greek token is restored for each generated
+	 * token.
+	 */
+	private final boolean restoreTokenState;
 	private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
 	private final PositionIncrementAttribute posIncAttribute = addAttribute(PositionIncrementAttribute.class);
 	private final TypeAttribute typeAttribute = addAttribute(TypeAttribute.class);
@@ -47,19 +74,31 @@ public class GreeklishTokenFilter extends TokenFilter {
 
 	// Constructor
 	public GreeklishTokenFilter(TokenStream tokenStream, int maxExpansions, boolean generateGreekVariants) {
+		this(tokenStream, GreeklishOptions.builder()
+				.maxExpansions(maxExpansions)
+				.generateGreekVariants(generateGreekVariants)
+				.build());
+	}
+
+	// Constructor
+	public GreeklishTokenFilter(TokenStream tokenStream, GreeklishOptions options) {
 		super(tokenStream);
-		this.greeklishConverter = new GreeklishConverter(maxExpansions, generateGreekVariants);
+		this.greeklishConverter = new GreeklishConverter(options);
+		this.restoreTokenState = options.isRestoreState();
+		this.maxGeneratedPerField = options.getMaxGeneratedPerField();
 	}
 
 	@Override
-	public boolean incrementToken() throws IOException {
-		// If the stack has greeklish tokens, now it is the
+	public final boolean incrementToken() throws IOException {
+		// If the buffer has pending greeklish tokens, now it is the
 		// right time to put them in the token stream
-		if (greeklishWords.size() > 0) {
-			char[] greeklishWord = greeklishWords.pop();
-			restoreState(current);
-			termAttribute.copyBuffer(greeklishWord, 0, greeklishWord.length);
-			termAttribute.setLength(greeklishWord.length);
+		if (pendingWords > 0) {
+			int greeklishWord = --pendingWords;
+			if (restoreTokenState) {
+				restoreState(current);
+			}
+			termAttribute.copyBuffer(greeklishWords.buffer(),
+					greeklishWords.offset(greeklishWord), greeklishWords.length(greeklishWord));
 			posIncAttribute.setPositionIncrement(0);
 			typeAttribute.setType(TOKEN_TYPE);
 			return true;
@@ -71,7 +110,7 @@ public class GreeklishTokenFilter extends TokenFilter {
 
 		// if this token is useful to generate greeklish tokens
 		// hold the current state, because we have work to do.
-		if (addWordsToStack()) {
+		if (addWordsToBuffer() && restoreTokenState) {
 			current = captureState();
 		}
 
@@ -79,11 +118,57 @@ public class GreeklishTokenFilter extends TokenFilter {
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * @return the number of duplicate greeklish words that this filter did
+	 *         not emit
+	 */
+	public long getRemovedDuplicates() {
+		return greeklishConverter.getRemovedDuplicates();
+	}
+
+	/**
+	 * Drops the pending greeklish tokens and the state of the last greek
+	 * token, which belong to the previous use of the token stream.
 	 */
 	@Override
 	public void reset() throws IOException {
 		super.reset();
+		generatedTokens = 0;
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, and releases the
+	 * buffers that grew beyond the retained capacities.
+	 */
+	@Override
+	public void end() throws IOException {
+		super.end();
+		greeklishConverter.flushStats();
+		release();
+	}
+
+	/**
+	 * Adds the counts of the token stream to the stats, if it did not reach
+	 * its end.
+	 */
+	@Override
+	public void close() throws IOException {
+		greeklishConverter.flushStats();
+		super.close();
+	}
+
+	/**
+	 * @return the memory used by the buffers of the filter, in bytes
+	 */
+	long ramBytesUsed() {
+		return greeklishWords.ramBytesUsed() + greeklishConverter.ramBytesUsed();
+	}
+
+	private void release() {
+		pendingWords = 0;
+		current = null;
+		greeklishWords.release();
+		greeklishConverter.release();
 	}
 
 	/**
@@ -93,19 +178,21 @@ public class GreeklishTokenFilter extends TokenFilter {
 	 * @return false if no tokens are generated, true elsewhere.
 	 * @throws IOException
 	 */
-	private boolean addWordsToStack() throws IOException {
+	private boolean addWordsToBuffer() throws IOException {
 		// Did the converter returned any greeklish tokens
 		// If true, place the in the token buffer, or else go to the next
 		// Greek token of the token stream.
-		List<StringBuilder> greeklishTokens = greeklishConverter.convert(termAttribute.buffer(), termAttribute.length());
-		if (greeklishTokens == null || greeklishTokens.isEmpty()) {
+		// Once the budget of the field is spent, only the most common
+		// spelling of each token is generated.
+		greeklishWords.clear();
+		int maxTokens = Math.max(1, maxGeneratedPerField - generatedTokens);
+		if (!greeklishConverter.convert(termAttribute.buffer(), termAttribute.length(), greeklishWords,
+				maxTokens)) {
 			return false;
 		}
-		for (StringBuilder word : greeklishTokens) {
-			greeklishWords.push(word.toString().toCharArray());
-		}
+		pendingWords = greeklishWords.size();
+		generatedTokens += pendingWords;
 		return true;
 	}
 
-
 }
@@ -1,5 +1,9 @@
 package org.elasticsearch.index.analysis;
 
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.lucene.analysis.TokenStream;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.assistedinject.Assisted;
@@ -9,23 +13,151 @@ import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 
 public class GreeklishTokenFilterFactory  extends AbstractTokenFilterFactory {
-	private final int maxExpansions;
-	private final boolean generateGreekVariants;
+	private final GreeklishOptions options;
+
+	/**
+	 * SEARCH_TIME if the filter is updateable, so that its rules are
+	 * reloaded with the search analyzers, without closing the index.
+	 */
+	private final AnalysisMode analysisMode;
 
 	@Inject
 	public GreeklishTokenFilterFactory(IndexSettings indexSettings,
 					   Environment env,
 					   @Assisted String name,
 					   @Assisted Settings settings) {
+		this(indexSettings, env, name, settings, new GreeklishOptions.Registry(),
+				new GreeklishExpansionCache.Registry(), new GreeklishDictionary.Registry(),
+				new GreeklishLexicon.Registry(), new GreeklishStats.Registry());
+	}
+
+	public GreeklishTokenFilterFactory(IndexSettings indexSettings,
+					   Environment env,
+					   String name,
+					   Settings settings,
+					   GreeklishOptions.Registry compiledOptions,
+					   GreeklishExpansionCache.Registry expansionCaches,
+					   GreeklishDictionary.Registry dictionaries,
+					   GreeklishLexicon.Registry lexicons,
+					   GreeklishStats.Registry stats) {
 
       		super(indexSettings, name, settings);
-            	this.maxExpansions = settings.getAsInt("max_expansions", 20);
-            	this.generateGreekVariants = settings.getAsBoolean("greek_variants", true);
+		String index = indexSettings.getIndex().getName();
+		// indices with the same settings share the compiled options
+		this.options = compiledOptions.intern(parseOptions(env, settings, dictionaries, lexicons)
+				.expansionCache(expansionCaches.get(settings.getAsLong("expansion_cache_size", 0L)))
+				.build())
+				.withStats(stats.get(index, name));
+		this.analysisMode = settings.getAsBoolean("updateable", false) ? AnalysisMode.SEARCH_TIME : AnalysisMode.ALL;
+	}
+
+	/**
+	 * Parses the settings of a filter that affect its output, i.e. all but
+	 * the expansion cache and the stats, which are shared by the filters of
+	 * a node. The files of the settings must be in the config directory.
+	 */
+	public static GreeklishOptions.Builder parseOptions(Environment env, Settings settings,
+			GreeklishDictionary.Registry dictionaries, GreeklishLexicon.Registry lexicons) {
+		for (String key : new String[] { "suffix_rules_path", "conversion_rules_path", "expansion_weights_path" }) {
+			configFile(env, settings, key);
+		}
+		GreeklishRules rules = GreeklishRules.parse(Analysis.getWordList(env, settings, "suffix_rules"),
+				Analysis.getWordList(env, settings, "conversion_rules"));
+		return GreeklishOptions.builder()
+				.rules(rules)
+				.mode(GreeklishOptions.Mode.fromString(settings.get("mode", "expand")))
+				.maxExpansions(settings.getAsInt("max_expansions", GreeklishOptions.DEFAULT_MAX_EXPANSIONS))
+				.maxTokensPerTerm(settings.getAsInt("max_tokens_per_term",
+						GreeklishOptions.DEFAULT_MAX_TOKENS_PER_TERM))
+				.maxGeneratedPerField(settings.getAsInt("max_generated_per_field",
+						GreeklishOptions.DEFAULT_MAX_GENERATED_PER_FIELD))
+				.generateGreekVariants(settings.getAsBoolean("greek_variants", true))
+				.restoreState(settings.getAsBoolean("restore_state", true))
+				.normalizeGreek(settings.getAsBoolean("normalize_greek", false))
+				.minGram(settings.getAsInt("min_gram", GreeklishOptions.DEFAULT_MIN_GRAM))
+				.maxGram(settings.getAsInt("max_gram", GreeklishOptions.DEFAULT_MAX_GRAM))
+				.weights(parseWeights(env, settings, rules))
+				.dictionary(loadDictionary(env, settings, dictionaries))
+				.lexicon(loadLexicon(env, settings, lexicons));
+	}
+
+	/**
+	 * @return the dictionary of the expansion_dictionary_path file in the
+	 *         config directory, or null if it is not set
+	 */
+	private static GreeklishDictionary loadDictionary(Environment env, Settings settings,
+			GreeklishDictionary.Registry dictionaries) {
+		Path path = configFile(env, settings, "expansion_dictionary_path");
+		return path == null ? null : dictionaries.get(path);
+	}
+
+	/**
+	 * @return the lexicon of the greek_lexicon_path word list in the config
+	 *         directory, or null if it is not set
+	 */
+	private static GreeklishLexicon loadLexicon(Environment env, Settings settings,
+			GreeklishLexicon.Registry lexicons) {
+		Path path = configFile(env, settings, "greek_lexicon_path");
+		return path == null ? null : lexicons.get(path);
+	}
+
+	/**
+	 * @return the file of the setting, resolved against the config directory,
+	 *         or null if it is not set
+	 * @throws IllegalArgumentException
+	 *             if the file is not in the config directory
+	 */
+	private static Path configFile(Environment env, Settings settings, String key) {
+		String path = settings.get(key);
+		if (path == null) {
+			return null;
+		}
+		Path configDirectory = env.configFile().toAbsolutePath().normalize();
+		Path file = configDirectory.resolve(path).normalize();
+		if (!file.startsWith(configDirectory)) {
+			throw new IllegalArgumentException("The [" + key + "] file [" + path
+					+ "] is not in the config directory");
+		}
+		return file;
+	}
+
+	/**
+	 * The greeklish words are weighted if weighted_expansions is set, or if
+	 * expansion_weights (inline) or expansion_weights_path (a file in the
+	 * config directory) override the built-in probabilities.
+	 * @return the weights of the conversions, or null if they are not weighted
+	 */
+	private static GreeklishWeights parseWeights(Environment env, Settings settings, GreeklishRules conversionRules) {
+		List<String> rules = Analysis.getWordList(env, settings, "expansion_weights");
+		if (!settings.getAsBoolean("weighted_expansions", rules != null)) {
+			return null;
+		}
+		if (rules == null && conversionRules == GreeklishRules.DEFAULT) {
+			return GreeklishWeights.DEFAULT;
+		}
+		return GreeklishWeights.parse(rules == null ? Collections.<String>emptyList() : rules, conversionRules);
 	}
 
 	@Override
 	public TokenStream create(TokenStream tokenStream) {
-		return new GreeklishTokenFilter(tokenStream, maxExpansions, generateGreekVariants);
+		if (options.getMode() == GreeklishOptions.Mode.CANONICAL) {
+			return new GreeklishCanonicalTokenFilter(tokenStream, options);
+		}
+		if (options.getMode() == GreeklishOptions.Mode.AUTOCOMPLETE) {
+			return new GreeklishAutocompleteTokenFilter(tokenStream, options);
+		}
+		return new GreeklishTokenFilter(tokenStream, options);
     }
 
+	@Override
+	public AnalysisMode getAnalysisMode() {
+		return analysisMode;
+	}
+
+	/**
+	 * @return the options of the filters that this factory creates
+	 */
+	public GreeklishOptions getOptions() {
+		return options;
+	}
 }
@@ -0,0 +1,104 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * An open addressing hash set of the tokens of a {@link GreeklishTokens},
+ * used to find the duplicate tokens. The set keeps only the indices of the
+ * tokens and compares their characters in place, and its table is reused
+ * between the greek tokens, so nothing is allocated per token.
+ */
+final class GreeklishTokenSet {
+
+	/**
+	 * The index of the token in each slot plus one, or 0 if the slot is empty.
+	 */
+	private int[] slots = new int[16];
+
+	private int mask = slots.length - 1;
+
+	private GreeklishTokens tokens;
+
+	/**
+	 * Empties the set, for the given number of tokens at most.
+	 */
+	void clear(GreeklishTokens tokens, int expectedTokens) {
+		this.tokens = tokens;
+		// keep the load factor at most one half
+		int capacity = Integer.highestOneBit(Math.max(8, expectedTokens) * 2 - 1) << 1;
+		if (slots.length < capacity) {
+			slots = new int[capacity];
+		} else {
+			Arrays.fill(slots, 0, capacity, 0);
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Forgets the tokens, and drops the table if it grew beyond the retained
+	 * number of tokens.
+	 */
+	void release() {
+		tokens = null;
+		if (slots.length > 2 * GreeklishTokens.MAX_RETAINED_TOKENS) {
+			slots = new int[16];
+			mask = slots.length - 1;
+		}
+	}
+
+	/**
+	 * @return the memory used by the table, in bytes
+	 */
+	long ramBytesUsed() {
+		return RamUsageEstimator.sizeOf(slots);
+	}
+
+	/**
+	 * Adds a token to the set, unless an equal token is already in it.
+	 *
+	 * @param buffer
+	 *            the characters of the token
+	 * @param offset
+	 *            the offset of the token in the buffer
+	 * @param length
+	 *            the length of the token
+	 * @param token
+	 *            the index that the token will have in the tokens, where
+	 *            the characters are compared from
+	 * @return true if the token was added, false if it is a duplicate
+	 */
+	boolean add(char[] buffer, int offset, int length, int token) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		// spread the low bits, since the table is indexed by them
+		hash ^= hash >>> 16;
+
+		int slot = hash & mask;
+		while (slots[slot] != 0) {
+			if (equals(slots[slot] - 1, buffer, offset, length)) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = token + 1;
+		return true;
+	}
+
+	private boolean equals(int token, char[] buffer, int offset, int length) {
+		if (tokens.length(token) != length) {
+			return false;
+		}
+		char[] chars = tokens.buffer();
+		int tokenOffset = tokens.offset(token);
+		for (int i = 0; i < length; i++) {
+			if (chars[tokenOffset + i] != buffer[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
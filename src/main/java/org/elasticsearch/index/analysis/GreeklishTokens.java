@@ -0,0 +1,213 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * The greeklish tokens that are generated from a greek token, kept in a
+ * single flat character buffer with the end offset of each token.
+ * The buffers grow as needed and are reused between the greek tokens, so
+ * the tokens can be copied straight into the term attribute without any
+ * intermediate objects.
+ */
+public final class GreeklishTokens {
+
+	private static final int INITIAL_CHARS = 64;
+	private static final int INITIAL_TOKENS = 8;
+
+	/**
+	 * The capacities above which the buffers are dropped when the tokens are
+	 * released, so that a single long token does not keep large buffers for
+	 * the lifetime of a reused token stream.
+	 */
+	static final int MAX_RETAINED_CHARS = 8192;
+	static final int MAX_RETAINED_TOKENS = 1024;
+
+	private char[] chars;
+
+	private int[] ends;
+
+	private int size;
+
+	public GreeklishTokens() {
+		this(INITIAL_CHARS, INITIAL_TOKENS);
+	}
+
+	private GreeklishTokens(int charCapacity, int tokenCapacity) {
+		this.chars = new char[charCapacity];
+		this.ends = new int[tokenCapacity];
+	}
+
+	/**
+	 * Removes all the tokens, keeping the buffers.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Removes the tokens after the first ones.
+	 *
+	 * @param size
+	 *            the number of tokens to keep
+	 * @throws IllegalArgumentException
+	 *             if the size is negative
+	 */
+	void truncate(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Cannot keep [" + size + "] tokens");
+		}
+		if (size < this.size) {
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Removes all the tokens, and replaces the buffers with new ones if they
+	 * grew beyond the retained capacities.
+	 */
+	void release() {
+		size = 0;
+		if (chars.length > MAX_RETAINED_CHARS) {
+			chars = new char[INITIAL_CHARS];
+		}
+		if (ends.length > MAX_RETAINED_TOKENS) {
+			ends = new int[INITIAL_TOKENS];
+		}
+	}
+
+	/**
+	 * @return the memory used by the buffers, in bytes
+	 */
+	long ramBytesUsed() {
+		return RamUsageEstimator.sizeOf(chars) + RamUsageEstimator.sizeOf(ends);
+	}
+
+	/**
+	 * @return the number of tokens
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the buffer that holds the characters of all the tokens
+	 */
+	public char[] buffer() {
+		return chars;
+	}
+
+	/**
+	 * @return the offset of a token in the buffer
+	 */
+	public int offset(int token) {
+		return token == 0 ? 0 : ends[token - 1];
+	}
+
+	/**
+	 * @return the length of a token
+	 */
+	public int length(int token) {
+		return ends[token] - offset(token);
+	}
+
+	/**
+	 * @return the number of characters of all the tokens
+	 */
+	int charCount() {
+		return size == 0 ? 0 : ends[size - 1];
+	}
+
+	/**
+	 * Appends a token.
+	 */
+	public void add(char[] buffer, int offset, int length) {
+		int start = charCount();
+		ensureCapacity(start + length, size + 1);
+		System.arraycopy(buffer, offset, chars, start, length);
+		ends[size++] = start + length;
+	}
+
+	/**
+	 * Appends all the tokens of another instance.
+	 */
+	public void addAll(GreeklishTokens other) {
+		int start = charCount();
+		int otherChars = other.charCount();
+		ensureCapacity(start + otherChars, size + other.size);
+		System.arraycopy(other.chars, 0, chars, start, otherChars);
+		for (int i = 0; i < other.size; i++) {
+			ends[size++] = start + other.ends[i];
+		}
+	}
+
+	/**
+	 * @return a copy of the tokens whose buffers have the exact size
+	 */
+	public GreeklishTokens copy() {
+		GreeklishTokens copy = new GreeklishTokens(charCount(), size);
+		copy.addAll(this);
+		return copy;
+	}
+
+	/**
+	 * Removes the tokens after the start index that are equal to an earlier
+	 * token after the start index, keeping the first one. The buffers are
+	 * compacted in place.
+	 *
+	 * @param start
+	 *            the index of the first token to check
+	 * @param seen
+	 *            the set that the tokens are checked against
+	 * @return the number of removed tokens
+	 */
+	int removeDuplicates(int start, GreeklishTokenSet seen) {
+		seen.clear(this, size - start);
+		int kept = start;
+		int write = offset(start);
+		int read = write;
+		for (int i = start; i < size; i++) {
+			int end = ends[i];
+			int length = end - read;
+			if (seen.add(chars, read, length, kept)) {
+				System.arraycopy(chars, read, chars, write, length);
+				write += length;
+				ends[kept++] = write;
+			}
+			read = end;
+		}
+		int removed = size - kept;
+		size = kept;
+		return removed;
+	}
+
+	/**
+	 * @return the tokens as strings
+	 */
+	public List<String> toStrings() {
+		List<String> strings = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			strings.add(new String(chars, offset(i), length(i)));
+		}
+		return strings;
+	}
+
+	private void ensureCapacity(int charCapacity, int tokenCapacity) {
+		if (chars.length < charCapacity) {
+			char[] grown = new char[Math.max(charCapacity, 2 * chars.length)];
+			System.arraycopy(chars, 0, grown, 0, charCount());
+			chars = grown;
+		}
+		if (ends.length < tokenCapacity) {
+			int[] grown = new int[Math.max(tokenCapacity, 2 * ends.length)];
+			System.arraycopy(ends, 0, grown, 0, size);
+			ends = grown;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The probabilities of the latin strings that replace each greek character
+ * or digraph. With weights, the greeklish generator keeps the most probable
+ * greeklish words of a greek word, instead of the first ones that it finds,
+ * when the maximum expansions are reached.
+ * <p>
+ * The built-in probabilities can be overridden by rules, one per character
+ * or digraph, e.g.
+ * <pre>
+ * φ f:0.9 ph:0.1
+ * ου ou:0.8 u:0.2
+ * </pre>
+ * A rule replaces all the latin strings of the character. The weights of a
+ * rule are normalized to probabilities, and a latin string of zero weight
+ * is left out.
+ */
+public final class GreeklishWeights {
+
+	/**
+	 * The built-in probabilities, without any rules.
+	 */
+	public static final GreeklishWeights DEFAULT =
+			new GreeklishWeights(Collections.<String, Map<String, Double>>emptyMap(), GreeklishRules.DEFAULT);
+
+	/**
+	 * The weight of each latin string of the greek characters and digraphs
+	 * that are overridden.
+	 */
+	private final Map<String, Map<String, Double>> rules;
+
+	/**
+	 * The rules of the conversions that the weights apply to.
+	 */
+	private final GreeklishRules conversionRules;
+
+	/**
+	 * The conversions of the greeklish generator, compiled with the weights.
+	 */
+	private final GreeklishConversions conversions;
+
+	/**
+	 * The hash of the weights, computed once since it is part of the key of
+	 * each lookup of the expansion cache.
+	 */
+	private final int hashCode;
+
+	private GreeklishWeights(Map<String, Map<String, Double>> rules, GreeklishRules conversionRules) {
+		this.rules = rules;
+		this.conversionRules = conversionRules;
+		this.conversions = conversionRules.weightedConversions(rules);
+		this.hashCode = 31 * rules.hashCode() + conversionRules.hashCode();
+	}
+
+	/**
+	 * Parses the weight rules of the built-in conversions.
+	 *
+	 * @see #parse(List, GreeklishRules)
+	 */
+	public static GreeklishWeights parse(List<String> lines) {
+		return parse(lines, GreeklishRules.DEFAULT);
+	}
+
+	/**
+	 * Parses the weight rules, e.g. the lines of a file in the config
+	 * directory.
+	 *
+	 * @param lines
+	 *            the rules, one per greek character or digraph
+	 * @param conversionRules
+	 *            the rules of the conversions that the weights apply to
+	 * @return the built-in probabilities overridden by the rules
+	 * @throws IllegalArgumentException
+	 *             if a rule is not valid
+	 */
+	public static GreeklishWeights parse(List<String> lines, GreeklishRules conversionRules) {
+		Map<String, Map<String, Double>> rules = new LinkedHashMap<String, Map<String, Double>>();
+		for (String line : lines) {
+			String rule = line.trim();
+			if (rule.isEmpty() || rule.startsWith("#")) {
+				continue;
+			}
+			String[] parts = rule.split("\\s+");
+			if (parts.length < 2) {
+				throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+						+ "], expected a greek character followed by latin:weight pairs");
+			}
+			Map<String, Double> weights = new LinkedHashMap<String, Double>();
+			for (int i = 1; i < parts.length; i++) {
+				int separator = parts[i].lastIndexOf(':');
+				if (separator <= 0 || separator == parts[i].length() - 1) {
+					throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+							+ "], expected latin:weight instead of [" + parts[i] + "]");
+				}
+				String latin = parts[i].substring(0, separator);
+				if (!GreeklishCanonicalizer.identifyLatinWord(latin.toCharArray(), latin.length())) {
+					throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+							+ "], [" + latin + "] is not latin lowercase");
+				}
+				double weight;
+				try {
+					weight = Double.parseDouble(parts[i].substring(separator + 1));
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+							+ "], [" + parts[i] + "] has no numeric weight", e);
+				}
+				if (!(weight >= 0) || Double.isInfinite(weight)) {
+					throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+							+ "], the weight of [" + parts[i] + "] must be a non negative number");
+				}
+				if (weight > 0) {
+					weights.put(latin, weight);
+				}
+			}
+			if (weights.isEmpty()) {
+				throw new IllegalArgumentException("Invalid expansion weights rule [" + line
+						+ "], at least one latin string must have a positive weight");
+			}
+			if (rules.put(parts[0], Collections.unmodifiableMap(weights)) != null) {
+				throw new IllegalArgumentException("Duplicate expansion weights rule for [" + parts[0] + "]");
+			}
+		}
+		return new GreeklishWeights(Collections.unmodifiableMap(rules), conversionRules);
+	}
+
+	/**
+	 * @return the rules of the conversions that the weights apply to
+	 */
+	public GreeklishRules getRules() {
+		return conversionRules;
+	}
+
+	/**
+	 * @return the conversions of the greeklish generator with the weights
+	 */
+	GreeklishConversions conversions() {
+		return conversions;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof GreeklishWeights)) {
+			return false;
+		}
+		GreeklishWeights other = (GreeklishWeights) o;
+		return hashCode == other.hashCode
+				&& rules.equals(other.rules)
+				&& conversionRules.equals(other.conversionRules);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
@@ -0,0 +1,210 @@
+package org.elasticsearch.index.query;
+
+import java.io.IOException;
+import java.util.Objects;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.analysis.GreeklishAutomata;
+import org.elasticsearch.index.mapper.MappedFieldType;
+
+/**
+ * A query that matches all the greeklish spellings of a greek word on a
+ * field with latin terms. The conversions of the word are compiled into an
+ * automaton, so there is no limit to the greeklish words that are matched.
+ *
+ * <pre>
+ * "greeklish": {
+ *     "title.latin": {
+ *         "value": "αυτοκίνητο",
+ *         "greek_variants": true
+ *     }
+ * }
+ * </pre>
+ */
+public class GreeklishQueryBuilder extends AbstractQueryBuilder<GreeklishQueryBuilder> {
+	public static final String NAME = "greeklish";
+
+	public static final boolean DEFAULT_GREEK_VARIANTS = true;
+
+	private static final ParseField VALUE_FIELD = new ParseField("value");
+	private static final ParseField GREEK_VARIANTS_FIELD = new ParseField("greek_variants");
+
+	private final String fieldName;
+
+	private final String value;
+
+	private boolean greekVariants = DEFAULT_GREEK_VARIANTS;
+
+	// Constructor
+	public GreeklishQueryBuilder(String fieldName, String value) {
+		if (Strings.isEmpty(fieldName)) {
+			throw new IllegalArgumentException("field name is null or empty");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("value cannot be null");
+		}
+		this.fieldName = fieldName;
+		this.value = value;
+	}
+
+	// Constructor
+	public GreeklishQueryBuilder(StreamInput in) throws IOException {
+		super(in);
+		this.fieldName = in.readString();
+		this.value = in.readString();
+		this.greekVariants = in.readBoolean();
+	}
+
+	@Override
+	protected void doWriteTo(StreamOutput out) throws IOException {
+		out.writeString(fieldName);
+		out.writeString(value);
+		out.writeBoolean(greekVariants);
+	}
+
+	public String fieldName() {
+		return fieldName;
+	}
+
+	public String value() {
+		return value;
+	}
+
+	/**
+	 * Sets whether the greeklish words of the singular/plural variants of the
+	 * greek word are matched too.
+	 */
+	public GreeklishQueryBuilder greekVariants(boolean greekVariants) {
+		this.greekVariants = greekVariants;
+		return this;
+	}
+
+	public boolean greekVariants() {
+		return greekVariants;
+	}
+
+	@Override
+	protected void doXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.startObject(NAME);
+		builder.startObject(fieldName);
+		builder.field(VALUE_FIELD.getPreferredName(), value);
+		builder.field(GREEK_VARIANTS_FIELD.getPreferredName(), greekVariants);
+		printBoostAndQueryName(builder);
+		builder.endObject();
+		builder.endObject();
+	}
+
+	public static GreeklishQueryBuilder fromXContent(XContentParser parser) throws IOException {
+		String fieldName = null;
+		String value = null;
+		boolean greekVariants = DEFAULT_GREEK_VARIANTS;
+		float boost = AbstractQueryBuilder.DEFAULT_BOOST;
+		String queryName = null;
+
+		String currentFieldName = null;
+		XContentParser.Token token;
+		while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+			if (token == XContentParser.Token.FIELD_NAME) {
+				currentFieldName = parser.currentName();
+			} else if (token == XContentParser.Token.START_OBJECT) {
+				throwParsingExceptionOnMultipleFields(NAME, parser.getTokenLocation(), fieldName, currentFieldName);
+				fieldName = currentFieldName;
+				while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+					if (token == XContentParser.Token.FIELD_NAME) {
+						currentFieldName = parser.currentName();
+					} else if (token.isValue()) {
+						if (VALUE_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+							value = parser.text();
+						} else if (GREEK_VARIANTS_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+							greekVariants = parser.booleanValue();
+						} else if (AbstractQueryBuilder.BOOST_FIELD.match(currentFieldName,
+								parser.getDeprecationHandler())) {
+							boost = parser.floatValue();
+						} else if (AbstractQueryBuilder.NAME_FIELD.match(currentFieldName,
+								parser.getDeprecationHandler())) {
+							queryName = parser.text();
+						} else {
+							throw new ParsingException(parser.getTokenLocation(),
+									"[" + NAME + "] query does not support [" + currentFieldName + "]");
+						}
+					} else {
+						throw new ParsingException(parser.getTokenLocation(),
+								"[" + NAME + "] unexpected token [" + token + "] after [" + currentFieldName + "]");
+					}
+				}
+			} else {
+				throwParsingExceptionOnMultipleFields(NAME, parser.getTokenLocation(), fieldName,
+						parser.currentName());
+				fieldName = currentFieldName;
+				value = parser.text();
+			}
+		}
+		if (fieldName == null || value == null) {
+			throw new ParsingException(parser.getTokenLocation(), "[" + NAME + "] requires a field and a value");
+		}
+
+		return new GreeklishQueryBuilder(fieldName, value)
+				.greekVariants(greekVariants)
+				.boost(boost)
+				.queryName(queryName);
+	}
+
+	@Override
+	protected Query doToQuery(QueryShardContext context) throws IOException {
+		return toQuery(context, Operations.DEFAULT_MAX_DETERMINIZED_STATES);
+	}
+
+	/**
+	 * @return the automaton query, with at most the given states
+	 * @throws QueryShardException
+	 *             if the value is not a greek word, or if its automaton has
+	 *             more states
+	 */
+	Query toQuery(QueryShardContext context, int maxDeterminizedStates) {
+		Automaton automaton;
+		try {
+			automaton = GreeklishAutomata.toAutomaton(value, greekVariants, maxDeterminizedStates);
+		} catch (TooComplexToDeterminizeException e) {
+			throw new QueryShardException(context, "[" + NAME + "] query of [" + value
+					+ "] is too complex to match all its greeklish words", e);
+		}
+		if (automaton == null) {
+			throw new QueryShardException(context, "[" + NAME + "] query requires a greek word, got [" + value + "]");
+		}
+		MappedFieldType fieldType = context.fieldMapper(fieldName);
+		if (fieldType == null) {
+			return new MatchNoDocsQuery("unknown field [" + fieldName + "]");
+		}
+		return new AutomatonQuery(new Term(fieldType.name(), value), automaton);
+	}
+
+	@Override
+	protected boolean doEquals(GreeklishQueryBuilder other) {
+		return Objects.equals(fieldName, other.fieldName)
+				&& Objects.equals(value, other.value)
+				&& greekVariants == other.greekVariants;
+	}
+
+	@Override
+	protected int doHashCode() {
+		return Objects.hash(fieldName, value, greekVariants);
+	}
+
+	@Override
+	public String getWriteableName() {
+		return NAME;
+	}
+}
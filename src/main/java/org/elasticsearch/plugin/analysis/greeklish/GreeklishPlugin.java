@@ -1,23 +1,135 @@
 package org.elasticsearch.plugin.analysis.greeklish;
 
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexModule;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.IndexEventListener;
+import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 import org.elasticsearch.indices.analysis.AnalysisModule.AnalysisProvider;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import org.elasticsearch.index.analysis.GreeklishDictionary;
+import org.elasticsearch.index.analysis.GreeklishExpansionCache;
+import org.elasticsearch.index.analysis.GreeklishLexicon;
+import org.elasticsearch.index.analysis.GreeklishOptions;
+import org.elasticsearch.index.analysis.GreeklishStats;
 import org.elasticsearch.index.analysis.GreeklishTokenFilterFactory;
+import org.elasticsearch.index.query.GreeklishQueryBuilder;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
+import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 
-public class GreeklishPlugin extends Plugin implements AnalysisPlugin {
+public class GreeklishPlugin extends Plugin implements AnalysisPlugin, SearchPlugin, ActionPlugin {
 
-    // Use singletonMap to register our token filter,
-    // since we only have one in our plugin.
+    // The compiled options are shared by the indices with the same settings,
+    // while any of their filter factories is in use.
+    private final GreeklishOptions.Registry compiledOptions = new GreeklishOptions.Registry();
+
+    // The expansion caches are shared by all the indices of the node.
+    private final GreeklishExpansionCache.Registry expansionCaches =
+            new GreeklishExpansionCache.Registry();
+
+    // The dictionaries are memory mapped once per node.
+    private final GreeklishDictionary.Registry dictionaries =
+            new GreeklishDictionary.Registry();
+
+    // The lexicons are built once per node.
+    private final GreeklishLexicon.Registry lexicons = new GreeklishLexicon.Registry();
+
+    // The stats of the filters of the node, per index and filter.
+    private final GreeklishStats.Registry stats =
+            new GreeklishStats.Registry();
+
+    // The environment of the node, for the settings of the explained filters.
+    private Environment environment;
+
+    // The skroutz_greeklish token filter; its mode setting selects the
+    // expand, canonical or autocomplete filter.
     @Override
     public Map<String, AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
         return singletonMap("skroutz_greeklish",
-                GreeklishTokenFilterFactory::new);
+                (indexSettings, env, name, settings) ->
+                        new GreeklishTokenFilterFactory(indexSettings, env, name, settings, compiledOptions,
+                                expansionCaches, dictionaries, lexicons, stats));
+    }
+
+    // The indices release their stats when they are removed from the node.
+    @Override
+    public void onIndexModule(IndexModule indexModule) {
+        indexModule.addIndexEventListener(new IndexEventListener() {
+            @Override
+            public void afterIndexRemoved(Index index, IndexSettings indexSettings, IndexRemovalReason reason) {
+                stats.remove(index.getName());
+            }
+        });
+    }
+
+    // The greeklish query matches all the greeklish spellings of a greek word.
+    @Override
+    public List<QuerySpec<?>> getQueries() {
+        return singletonList(new QuerySpec<>(GreeklishQueryBuilder.NAME,
+                GreeklishQueryBuilder::new, GreeklishQueryBuilder::fromXContent));
+    }
+
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+            ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+            NamedXContentRegistry xContentRegistry, Environment environment, NodeEnvironment nodeEnvironment,
+            NamedWriteableRegistry namedWriteableRegistry, IndexNameExpressionResolver indexNameExpressionResolver) {
+        this.environment = environment;
+        // bound for the stats action of the node
+        return singletonList(stats);
+    }
+
+    // The stats action collects the stats of the filters of each node.
+    @Override
+    public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+        return singletonList(new ActionHandler<>(GreeklishStatsAction.INSTANCE, TransportGreeklishStatsAction.class));
+    }
+
+    // The _greeklish/stats endpoint reports the stats of the nodes, and the
+    // _greeklish/explain endpoint the stages of the filter for a word.
+    @Override
+    public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+            ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings,
+            SettingsFilter settingsFilter, IndexNameExpressionResolver indexNameExpressionResolver,
+            Supplier<DiscoveryNodes> nodesInCluster) {
+        return Arrays.asList(new RestGreeklishStatsAction(),
+                new RestGreeklishExplainAction(() -> environment));
+    }
+
+    @Override
+    public void close() throws IOException {
+        dictionaries.close();
     }
-}
\ No newline at end of file
+}
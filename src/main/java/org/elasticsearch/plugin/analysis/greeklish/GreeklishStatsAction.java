@@ -0,0 +1,129 @@
+package org.elasticsearch.plugin.analysis.greeklish;
+
+import org.elasticsearch.action.ActionType;
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.analysis.GreeklishStats;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Collects the greeklish stats of the nodes of a cluster.
+ */
+public class GreeklishStatsAction extends ActionType<GreeklishStatsAction.NodesResponse> {
+
+    public static final GreeklishStatsAction INSTANCE = new GreeklishStatsAction();
+
+    public static final String NAME = "cluster:monitor/greeklish/stats";
+
+    private GreeklishStatsAction() {
+        super(NAME, NodesResponse::new);
+    }
+
+    /**
+     * The request for the stats of some nodes, or of all of them if no node
+     * is given.
+     */
+    public static class NodesRequest extends BaseNodesRequest<NodesRequest> {
+
+        public NodesRequest(String... nodesIds) {
+            super(nodesIds);
+        }
+
+        public NodesRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+    }
+
+    /**
+     * The request that is sent to each of the nodes.
+     */
+    public static class NodeRequest extends BaseNodeRequest {
+
+        public NodeRequest() {
+        }
+
+        public NodeRequest(StreamInput in) throws IOException {
+            super(in);
+        }
+    }
+
+    /**
+     * The stats of a node, in total and per index and filter.
+     */
+    public static class NodeStats extends BaseNodeResponse implements ToXContentFragment {
+
+        private final GreeklishStats.Registry stats;
+
+        public NodeStats(DiscoveryNode node, GreeklishStats.Registry stats) {
+            super(node);
+            this.stats = stats;
+        }
+
+        public NodeStats(StreamInput in) throws IOException {
+            super(in);
+            this.stats = new GreeklishStats.Registry(in);
+        }
+
+        public GreeklishStats.Registry getStats() {
+            return stats;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            stats.writeTo(out);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject(getNode().getId());
+            builder.field("name", getNode().getName());
+            stats.toXContent(builder, params);
+            return builder.endObject();
+        }
+    }
+
+    /**
+     * The stats of the nodes that responded, and the failures of the rest.
+     */
+    public static class NodesResponse extends BaseNodesResponse<NodeStats> implements ToXContentFragment {
+
+        public NodesResponse(ClusterName clusterName, List<NodeStats> nodes, List<FailedNodeException> failures) {
+            super(clusterName, nodes, failures);
+        }
+
+        public NodesResponse(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected List<NodeStats> readNodesFrom(StreamInput in) throws IOException {
+            return in.readList(NodeStats::new);
+        }
+
+        @Override
+        protected void writeNodesTo(StreamOutput out, List<NodeStats> nodes) throws IOException {
+            out.writeList(nodes);
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject("nodes");
+            for (NodeStats node : getNodes()) {
+                node.toXContent(builder, params);
+            }
+            return builder.endObject();
+        }
+    }
+}
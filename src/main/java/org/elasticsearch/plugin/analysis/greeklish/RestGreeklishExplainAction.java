@@ -0,0 +1,113 @@
+package org.elasticsearch.plugin.analysis.greeklish;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.analysis.GreeklishDictionary;
+import org.elasticsearch.index.analysis.GreeklishExplanation;
+import org.elasticsearch.index.analysis.GreeklishLexicon;
+import org.elasticsearch.index.analysis.GreeklishOptions;
+import org.elasticsearch.index.analysis.GreeklishTokenFilterFactory;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * Explains how the greeklish filter handles a word, stage by stage. The word
+ * is given in the text parameter or field, and the settings of the filter
+ * in the filter object of the body, the same way they are configured in an
+ * index. The dictionary and the lexicon of the settings are loaded for the
+ * request only, and released once the word is explained, so that the paths
+ * of the requests do not stay loaded on the node. They are loaded on the
+ * generic thread pool rather than on the network thread, and only from the
+ * config directory.
+ */
+public class RestGreeklishExplainAction extends BaseRestHandler {
+
+    private final Supplier<Environment> environment;
+
+    public RestGreeklishExplainAction(Supplier<Environment> environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public String getName() {
+        return "greeklish_explain_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Arrays.asList(new Route(GET, "/_greeklish/explain"), new Route(POST, "/_greeklish/explain"));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+        String text = request.param("text");
+        Settings settings = Settings.EMPTY;
+        if (request.hasContentOrSourceParam()) {
+            try (XContentParser parser = request.contentOrSourceParamParser()) {
+                if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                    throw new ParsingException(parser.getTokenLocation(), "[greeklish explain] expects an object");
+                }
+                String currentFieldName = null;
+                XContentParser.Token token;
+                while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                    if (token == XContentParser.Token.FIELD_NAME) {
+                        currentFieldName = parser.currentName();
+                    } else if ("text".equals(currentFieldName) && token.isValue()) {
+                        text = parser.text();
+                    } else if ("filter".equals(currentFieldName) && token == XContentParser.Token.START_OBJECT) {
+                        settings = Settings.fromXContent(parser);
+                    } else {
+                        throw new ParsingException(parser.getTokenLocation(),
+                                "[greeklish explain] does not support [" + currentFieldName + "]");
+                    }
+                }
+            }
+        }
+        if (text == null) {
+            throw new IllegalArgumentException("The text to explain is required");
+        }
+
+        final String word = text;
+        final Settings filter = settings;
+        return channel -> client.threadPool().executor(ThreadPool.Names.GENERIC).execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() throws Exception {
+                GreeklishExplanation explanation;
+                try (GreeklishDictionary.Registry dictionaries = new GreeklishDictionary.Registry()) {
+                    GreeklishOptions options = GreeklishTokenFilterFactory.parseOptions(environment.get(), filter,
+                            dictionaries, new GreeklishLexicon.Registry()).build();
+                    explanation = GreeklishExplanation.explain(word, options);
+                }
+                XContentBuilder builder = channel.newBuilder();
+                explanation.toXContent(builder, request);
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                try {
+                    channel.sendResponse(new BytesRestResponse(channel, e));
+                } catch (IOException inner) {
+                    inner.addSuppressed(e);
+                    logger.warn("failed to send the greeklish explain failure", inner);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package org.elasticsearch.plugin.analysis.greeklish;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * Reports the greeklish stats of the nodes of the cluster, or of the nodes
+ * in the path, in total and per index and filter.
+ */
+public class RestGreeklishStatsAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "greeklish_stats_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return Arrays.asList(new Route(GET, "/_greeklish/stats"), new Route(GET, "/_nodes/{nodeId}/_greeklish/stats"));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String[] nodesIds = Strings.splitStringByCommaToArray(request.param("nodeId"));
+        GreeklishStatsAction.NodesRequest statsRequest = new GreeklishStatsAction.NodesRequest(nodesIds);
+        statsRequest.timeout(request.param("timeout"));
+        return channel -> client.execute(GreeklishStatsAction.INSTANCE, statsRequest,
+                new RestActions.NodesResponseRestListener<>(channel));
+    }
+}
@@ -0,0 +1,54 @@
+package org.elasticsearch.plugin.analysis.greeklish;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.analysis.GreeklishStats;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Fans the stats request out to the nodes, each of which reports the stats
+ * of its own filters.
+ */
+public class TransportGreeklishStatsAction extends TransportNodesAction<GreeklishStatsAction.NodesRequest,
+        GreeklishStatsAction.NodesResponse, GreeklishStatsAction.NodeRequest, GreeklishStatsAction.NodeStats> {
+
+    private final GreeklishStats.Registry stats;
+
+    @Inject
+    public TransportGreeklishStatsAction(ThreadPool threadPool, ClusterService clusterService,
+            TransportService transportService, ActionFilters actionFilters, GreeklishStats.Registry stats) {
+        super(GreeklishStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                GreeklishStatsAction.NodesRequest::new, GreeklishStatsAction.NodeRequest::new,
+                ThreadPool.Names.MANAGEMENT, GreeklishStatsAction.NodeStats.class);
+        this.stats = stats;
+    }
+
+    @Override
+    protected GreeklishStatsAction.NodesResponse newResponse(GreeklishStatsAction.NodesRequest request,
+            List<GreeklishStatsAction.NodeStats> nodes, List<FailedNodeException> failures) {
+        return new GreeklishStatsAction.NodesResponse(clusterService.getClusterName(), nodes, failures);
+    }
+
+    @Override
+    protected GreeklishStatsAction.NodeRequest newNodeRequest(GreeklishStatsAction.NodesRequest request) {
+        return new GreeklishStatsAction.NodeRequest();
+    }
+
+    @Override
+    protected GreeklishStatsAction.NodeStats newNodeResponse(StreamInput in) throws IOException {
+        return new GreeklishStatsAction.NodeStats(in);
+    }
+
+    @Override
+    protected GreeklishStatsAction.NodeStats nodeOperation(GreeklishStatsAction.NodeRequest request) {
+        return new GreeklishStatsAction.NodeStats(clusterService.localNode(), stats);
+    }
+}
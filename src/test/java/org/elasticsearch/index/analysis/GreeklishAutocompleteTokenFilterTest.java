@@ -0,0 +1,82 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishAutocompleteTokenFilterTest {
+
+	private static final String TEXT = "κλιματιστικο 12 inverter αυτοκινητα φωτογραφικη";
+
+	@Test
+	public void testDistinctGramsOfTheGreeklishTokens() throws IOException {
+		for (int[] grams : new int[][] { { 1, 20 }, { 2, 5 }, { 3, 3 } }) {
+			GreeklishOptions options = GreeklishOptions.builder()
+					.mode(GreeklishOptions.Mode.AUTOCOMPLETE)
+					.minGram(grams[0])
+					.maxGram(grams[1])
+					.build();
+
+			List<String> autocomplete = analyze(new GreeklishAutocompleteTokenFilter(tokenize(), options));
+			List<String> chain = analyze(new EdgeNGramTokenFilter(new GreeklishTokenFilter(tokenize(), options),
+					grams[0], grams[1], false));
+
+			Assert.assertEquals(new LinkedHashSet<String>(autocomplete).size(), autocomplete.size(),
+					"Each gram should be emitted once per position");
+			Assert.assertEquals(new LinkedHashSet<String>(autocomplete), new LinkedHashSet<String>(chain));
+			Assert.assertTrue(autocomplete.size() < chain.size());
+		}
+	}
+
+	@Test
+	public void testShortTokensAreRemoved() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder()
+				.mode(GreeklishOptions.Mode.AUTOCOMPLETE)
+				.minGram(3)
+				.build();
+		List<String> grams = analyze(new GreeklishAutocompleteTokenFilter(tokenize(), options));
+		Assert.assertFalse(grams.contains("1/12"), grams.toString());
+		// the position of the removed token is kept
+		Assert.assertTrue(grams.contains("2/inv"), grams.toString());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testInvalidGrams() {
+		GreeklishOptions.builder().minGram(3).maxGram(2).build();
+	}
+
+	private static Tokenizer tokenize() {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(TEXT));
+		return tokenizer;
+	}
+
+	/**
+	 * @return the grams prefixed by their position
+	 */
+	private static List<String> analyze(TokenStream stream) throws IOException {
+		CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+		PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+		List<String> grams = new ArrayList<String>();
+		int position = -1;
+		stream.reset();
+		while (stream.incrementToken()) {
+			position += posInc.getPositionIncrement();
+			grams.add(position + "/" + term.toString());
+		}
+		stream.end();
+		stream.close();
+		return grams;
+	}
+}
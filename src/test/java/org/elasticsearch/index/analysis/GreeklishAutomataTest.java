@@ -0,0 +1,96 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.AutomatonQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishAutomataTest {
+
+	/**
+	 * a sample of greek words, in any case and with or without accents.
+	 */
+	private static final String[] greekWords = { "Αυτοκίνητο", "ομπρελα",
+			"ξεσκεπαστοσ", "ηλεκτρικη", "υπολογιστησ" };
+
+	@Test
+	public void testAutomatonAcceptsAllTheGreeklishWords() {
+		GreeklishConverter converter = new GreeklishConverter(Integer.MAX_VALUE, true);
+
+		for (String greekWord : greekWords) {
+			Automaton automaton = GreeklishAutomata.toAutomaton(greekWord, true);
+			Assert.assertTrue(automaton.isDeterministic());
+
+			char[] normalized = new char[greekWord.length()];
+			GreeklishConverter.normalizeGreekWord(greekWord.toCharArray(), greekWord.length(), normalized);
+			for (StringBuilder greeklishWord : converter.convert(normalized, normalized.length)) {
+				Assert.assertTrue(Operations.run(automaton, greeklishWord.toString()),
+						"It should accept the greeklish word: " + greeklishWord);
+			}
+		}
+
+		Automaton automaton = GreeklishAutomata.toAutomaton("αυτοκινητο", false);
+		String[] rejectedWords = { "autokinhta", "autokinhtoo", "autokinht", "αυτοκινητο", "" };
+		for (String rejectedWord : rejectedWords) {
+			Assert.assertFalse(Operations.run(automaton, rejectedWord),
+					"It should not accept the word: " + rejectedWord);
+		}
+	}
+
+	@Test
+	public void testNotGreekWords() {
+		for (String word : new String[] { "mobile", "αυριο64", "" }) {
+			Assert.assertNull(GreeklishAutomata.toAutomaton(word, true));
+		}
+	}
+
+	@Test
+	public void testAutomatonQueryIsNotLimitedByMaxExpansions() throws IOException {
+		String greekWord = "υπερηχογραφημα";
+		Set<String> latinTerms = new HashSet<String>();
+		for (StringBuilder greeklishWord : new GreeklishConverter(Integer.MAX_VALUE, true)
+				.convert(greekWord.toCharArray(), greekWord.length())) {
+			latinTerms.add(greeklishWord.toString());
+		}
+		int limited = new GreeklishConverter(GreeklishOptions.DEFAULT_MAX_EXPANSIONS, true)
+				.convert(greekWord.toCharArray(), greekWord.length()).size();
+		Assert.assertTrue(latinTerms.size() > limited,
+				"The word should have more greeklish words than the default max expansions");
+
+		try (Directory directory = new ByteBuffersDirectory()) {
+			try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()))) {
+				for (String latinTerm : latinTerms) {
+					Document document = new Document();
+					document.add(new StringField("title", latinTerm, Field.Store.NO));
+					writer.addDocument(document);
+				}
+				Document document = new Document();
+				document.add(new StringField("title", "yperhxografhmma", Field.Store.NO));
+				writer.addDocument(document);
+			}
+			try (DirectoryReader reader = DirectoryReader.open(directory)) {
+				IndexSearcher searcher = new IndexSearcher(reader);
+				AutomatonQuery query = new AutomatonQuery(new Term("title", greekWord),
+						GreeklishAutomata.toAutomaton(greekWord, true));
+				Assert.assertEquals(searcher.count(query), latinTerms.size(),
+						"All the greeklish spellings of the word and its variants should match");
+			}
+		}
+	}
+}
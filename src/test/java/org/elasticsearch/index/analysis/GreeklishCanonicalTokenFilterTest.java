@@ -0,0 +1,103 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishCanonicalTokenFilterTest {
+
+	/**
+	 * a sample of greek words whose greeklish words share their key. The
+	 * ambiguous spellings, i.e. "v" for ω, "h" for χ and "u" for υ, are
+	 * left out.
+	 */
+	private static final String[] greekWords = { "αυτοκινητο", "ομπρελα",
+			"ξεσκεπαστοσ", "καφετιερα", "ευκαιρια", "μπουφαν", "γκαζι" };
+
+	/**
+	 * greek words whose most common spelling has latin rules that span two
+	 * greek characters, like the "th" of "τη", the "ph" of "πη" and the
+	 * "ks" of "κσ". Their other spellings, like "ti" and "pi", have other
+	 * keys.
+	 */
+	private static final String[] spanningWords = { "τηλεφωνο", "πηγη", "εκσταση", "αντιθετη" };
+
+	@Test
+	public void testGreeklishWordsShareTheKeyOfTheGreekWord() throws IOException {
+		GreeklishConverter converter = new GreeklishConverter(Integer.MAX_VALUE, false);
+
+		for (String greekWord : greekWords) {
+			String key = analyze(greekWord, false).get(0);
+			Assert.assertNotEquals(key, greekWord, "The greek word should be replaced by its key");
+
+			StringBuilder greeklishWords = new StringBuilder();
+			for (StringBuilder greeklishWord : converter.convert(greekWord.toCharArray(), greekWord.length())) {
+				greeklishWords.append(greeklishWord).append(' ');
+			}
+			for (String greeklishKey : analyze(greeklishWords.toString(), false)) {
+				Assert.assertEquals(greeklishKey, key,
+						"The greeklish words of " + greekWord + " should share its key");
+			}
+		}
+	}
+
+	@Test
+	public void testMostCommonSpellingSharesTheKeyOfTheGreekWord() throws IOException {
+		GreeklishGenerator mostCommon = new GreeklishGenerator(1);
+		List<String> words = new ArrayList<String>(Arrays.asList(greekWords));
+		words.addAll(Arrays.asList(spanningWords));
+		for (String greekWord : words) {
+			String spelling = mostCommon.generateGreeklishWords(Collections.singletonList(greekWord))
+					.get(0).toString();
+			Assert.assertEquals(analyze(spelling, false), analyze(greekWord, false),
+					"The spelling " + spelling + " should share the key of " + greekWord);
+		}
+		Assert.assertEquals(analyze("τηλεφωνο πηγη", false), analyze("thlefwno phgh", false));
+	}
+
+	@Test
+	public void testSpellingsShareTheKey() throws IOException {
+		Assert.assertEquals(analyze("φωτογραφία photographia fotografia", true),
+				analyze("fotografia fotografia fotografia", false));
+		Assert.assertEquals(analyze("Μπουφάν mpoufan boyfan bufan", true),
+				analyze("bufan bufan bufan bufan", false));
+	}
+
+	@Test
+	public void testOtherTokensAreUntouched() throws IOException {
+		String[] tokens = { "2m", "iPhone", "sku-αβγ", "αυριο64", "Ομπρέλα" };
+		for (String token : tokens) {
+			Assert.assertEquals(analyze(token, false).get(0), token);
+		}
+	}
+
+	private List<String> analyze(String text, boolean normalizeGreek) throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		TokenStream stream = new GreeklishCanonicalTokenFilter(tokenizer,
+				GreeklishOptions.builder()
+						.mode(GreeklishOptions.Mode.CANONICAL)
+						.normalizeGreek(normalizeGreek)
+						.build());
+		CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+
+		List<String> tokens = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens.add(term.toString());
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+}
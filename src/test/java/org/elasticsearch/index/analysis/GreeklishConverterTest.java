@@ -1,8 +1,15 @@
 package org.elasticsearch.index.analysis;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.lucene.util.IOUtils;
+
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -39,7 +46,7 @@ public class GreeklishConverterTest {
 	 * these words should not be processed by the converter.
 	 */
 	private static final String[] invalidWords = { "mobile", "αυριο64",
-			"καλάθι", "ΣΠιτι", "ομορφος" };
+			"καλάθι", "ΣΠιτι", "ομορφος", "", "sku-αβγ" };
 
 	private List<StringBuilder> greeklishWords;
 
@@ -128,6 +135,189 @@ public class GreeklishConverterTest {
 				"It should not contain greeklish word: " + generatedGreeklishWords[0][9]);
 	}
 
+	@Test
+	public void testCachedGreeklishExpansions() {
+		GreeklishExpansionCache cache = new GreeklishExpansionCache(100);
+		GreeklishConverter cachingConverter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.expansionCache(cache)
+				.build());
+
+		greeklishWords = cachingConverter.convert(greekWords[1].toCharArray(),
+				greekWords[1].length());
+		populateConvertedStringsList();
+		List<String> generated = new ArrayList<String>(convertedGreeklishStrings);
+
+		convertedGreeklishStrings.clear();
+		greeklishWords = cachingConverter.convert(greekWords[1].toCharArray(),
+				greekWords[1].length());
+		populateConvertedStringsList();
+
+		Assert.assertEquals(convertedGreeklishStrings, generated,
+				"The cached greeklish words should be the same as the generated ones");
+		Assert.assertEquals(cache.getMisses(), 1);
+		Assert.assertEquals(cache.getHits(), 1);
+
+		// other settings should not hit the same entry
+		cachingConverter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(2)
+				.expansionCache(cache)
+				.build());
+		greeklishWords = cachingConverter.convert(greekWords[1].toCharArray(),
+				greekWords[1].length());
+
+		Assert.assertEquals(cache.getMisses(), 2);
+		Assert.assertEquals(cache.getCount(), 2);
+	}
+
+	@Test
+	public void testNormalizedGreekWords() {
+		GreeklishConverter normalizingConverter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.normalizeGreek(true)
+				.build());
+
+		String[] accentedWords = { "Αυτοκίνητο", "ΟΜΠΡΕΛΑ", "ξεσκέπαστος" };
+		for (int i = 0; i < accentedWords.length; i++) {
+			greeklishWords = normalizingConverter.convert(accentedWords[i].toCharArray(),
+					accentedWords[i].length());
+
+			populateConvertedStringsList();
+
+			for (String greeklishWord : generatedGreeklishWords[i]) {
+				Assert.assertTrue(convertedGreeklishStrings.contains(greeklishWord),
+						"It should contain greeklish word: " + greeklishWord);
+			}
+		}
+
+		Assert.assertNull(normalizingConverter.convert("αυριο64".toCharArray(), 7),
+				"It should not create any greeklish words");
+	}
+
+	@Test
+	public void testBudgetOfATerm() {
+		GreeklishConverter budgetConverter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.maxTokensPerTerm(6)
+				.build());
+		GreeklishTokens tokens = new GreeklishTokens();
+		budgetConverter.convert("ποδηλατου".toCharArray(), 9, tokens);
+		List<String> words = tokens.toStrings();
+		Assert.assertTrue(words.size() <= 6, words.toString());
+
+		// each variant keeps at least its most common spelling
+		GreeklishGenerator mostCommon = new GreeklishGenerator(1);
+		for (String variant : new GreekReverseStemmer().generateGreekVariants("ποδηλατου")) {
+			String spelling = mostCommon.generateGreeklishWords(Collections.singletonList(variant))
+					.get(0).toString();
+			Assert.assertTrue(words.contains(spelling), spelling + " is not in " + words);
+		}
+
+		// a lower budget cuts the words of the term
+		tokens.clear();
+		budgetConverter.convert("ποδηλατου".toCharArray(), 9, tokens, 1);
+		Assert.assertEquals(tokens.toStrings(), words.subList(0, 1));
+	}
+
+	@Test
+	public void testWordsAreAppendedWithinTheDefaultBudgets() throws IOException {
+		GreeklishConverter converter = new GreeklishConverter(MAX_EXPANSIONS, GENERATE_GREEK_VARIANTS);
+		GreeklishTokens expected = new GreeklishTokens();
+		for (String greekWord : greekWords) {
+			converter.convert(greekWord.toCharArray(), greekWord.length(), expected);
+		}
+		Assert.assertTrue(expected.size() > 0);
+
+		GreeklishTokens separately = new GreeklishTokens();
+		List<String> words = new ArrayList<String>();
+		for (String greekWord : greekWords) {
+			separately.clear();
+			converter.convert(greekWord.toCharArray(), greekWord.length(), separately);
+			words.addAll(separately.toStrings());
+		}
+		Assert.assertEquals(expected.toStrings(), words);
+
+		// from the cache
+		GreeklishConverter cachingConverter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.expansionCache(new GreeklishExpansionCache(100))
+				.build());
+		for (int pass = 0; pass < 2; pass++) {
+			GreeklishTokens cached = new GreeklishTokens();
+			for (String greekWord : greekWords) {
+				cachingConverter.convert(greekWord.toCharArray(), greekWord.length(), cached);
+			}
+			Assert.assertEquals(cached.toStrings(), words);
+		}
+
+		// from the dictionary
+		GreeklishOptions options = GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).build();
+		Path directory = Files.createTempDirectory("greeklish");
+		try (GreeklishDictionary.Registry dictionaries = new GreeklishDictionary.Registry()) {
+			Path path = directory.resolve("greeklish.dict");
+			GreeklishDictionaryBuilder.build(Arrays.asList(greekWords), options, path);
+			GreeklishConverter dictionaryConverter = new GreeklishConverter(GreeklishOptions.builder()
+					.maxExpansions(MAX_EXPANSIONS)
+					.dictionary(dictionaries.get(path))
+					.build());
+			GreeklishTokens found = new GreeklishTokens();
+			for (String greekWord : greekWords) {
+				dictionaryConverter.convert(greekWord.toCharArray(), greekWord.length(), found);
+			}
+			Assert.assertEquals(found.toStrings(), words);
+		} finally {
+			IOUtils.rm(directory);
+		}
+	}
+
+	@Test
+	public void testBudgetIsSplitTheSameFromTheCacheAndTheDictionary() throws IOException {
+		String word = "ποδηλατου";
+		GreeklishOptions options = GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.maxTokensPerTerm(6)
+				.build();
+		GreeklishConverter rules = new GreeklishConverter(options);
+		GreeklishConverter caching = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.maxTokensPerTerm(6)
+				.expansionCache(new GreeklishExpansionCache(100))
+				.build());
+
+		Path directory = Files.createTempDirectory("greeklish");
+		try (GreeklishDictionary.Registry dictionaries = new GreeklishDictionary.Registry()) {
+			Path path = directory.resolve("greeklish.dict");
+			GreeklishDictionaryBuilder.build(Collections.singletonList(word), options, path);
+			GreeklishConverter dictionaryConverter = new GreeklishConverter(GreeklishOptions.builder()
+					.maxExpansions(MAX_EXPANSIONS)
+					.maxTokensPerTerm(6)
+					.dictionary(dictionaries.get(path))
+					.build());
+
+			// the budget of the term, then the lower budget of a spent field
+			for (int maxTokens : new int[] { 6, 3, 6 }) {
+				GreeklishTokens expected = new GreeklishTokens();
+				rules.convert(word.toCharArray(), word.length(), expected, maxTokens);
+				// a cold cache, then a warm one
+				for (int pass = 0; pass < 2; pass++) {
+					GreeklishTokens cached = new GreeklishTokens();
+					caching.convert(word.toCharArray(), word.length(), cached, maxTokens);
+					Assert.assertEquals(cached.toStrings(), expected.toStrings(), "budget " + maxTokens);
+				}
+				GreeklishTokens found = new GreeklishTokens();
+				dictionaryConverter.convert(word.toCharArray(), word.length(), found, maxTokens);
+				Assert.assertEquals(found.toStrings(), expected.toStrings(), "budget " + maxTokens);
+			}
+		} finally {
+			IOUtils.rm(directory);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testNegativeTruncation() {
+		new GreeklishTokens().truncate(-1);
+	}
+
 	private final void populateConvertedStringsList() {
 		for (StringBuilder word : greeklishWords) {
 			convertedGreeklishStrings.add(word.toString());
@@ -0,0 +1,116 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.lucene.util.IOUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishCorpusProfilerTest {
+
+	private static final int[] THRESHOLDS = { 1, 5, 20, 100 };
+
+	/**
+	 * The lines of the corpus, repeated so that it spans many segments.
+	 */
+	private static final String[] LINES = { "Κλιματιστικό inverter 12000 BTU",
+			"Αυτοκίνητα και ΑΥΤΟΚΙΝΗΤΑ, φωτογραφική μηχανή",
+			"mobile phone" };
+
+	private static final int REPEATS = 50;
+
+	private Path directory;
+
+	private Path corpus;
+
+	private ForkJoinPool pool;
+
+	@BeforeClass
+	public void writeCorpus() throws IOException {
+		directory = Files.createTempDirectory("greeklish");
+		corpus = directory.resolve("corpus.txt");
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < REPEATS; i++) {
+			lines.addAll(Arrays.asList(LINES));
+		}
+		// without a new line at the end of the last line
+		Files.write(corpus, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public void removeCorpus() throws IOException {
+		pool.shutdown();
+		IOUtils.rm(directory);
+	}
+
+	@Test
+	public void testCountsDoNotDependOnTheSegments() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder().build();
+		GreeklishCorpusProfiler.Report whole = GreeklishCorpusProfiler.profile(corpus, options, THRESHOLDS, pool);
+
+		for (int segmentSize : new int[] { 1, 64, 1000 }) {
+			GreeklishCorpusProfiler.Report report = GreeklishCorpusProfiler.profile(corpus, options, THRESHOLDS,
+					pool, segmentSize);
+			Assert.assertEquals(report.getLines(), LINES.length * REPEATS);
+			Assert.assertEquals(report.getTokens(), 11 * REPEATS);
+			Assert.assertEquals(report.getGreekTokens(), 6 * REPEATS);
+			Assert.assertEquals(report.getGreekWords(), 5);
+			Assert.assertEquals(report.getFrequency("αυτοκινητα"), 2 * REPEATS);
+			Assert.assertEquals(report.getGreeklishTokens(), whole.getGreeklishTokens());
+		}
+	}
+
+	@Test
+	public void testReportIsWeightedByFrequency() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder().build();
+		GreeklishCorpusProfiler.Report report = GreeklishCorpusProfiler.profile(corpus, options, THRESHOLDS, pool,
+				100);
+
+		Assert.assertEquals(Arrays.stream(report.getVariantsHistogram()).sum(), report.getGreekTokens());
+		Assert.assertEquals(report.mostFrequentWords(1), Arrays.asList("αυτοκινητα"));
+
+		GreeklishConverter converter = new GreeklishConverter(options);
+		GreeklishTokens greeklishWords = new GreeklishTokens();
+		converter.convert("αυτοκινητα".toCharArray(), 10, greeklishWords);
+		Assert.assertTrue(report.getGreeklishTokens() >= 2 * REPEATS * greeklishWords.size());
+
+		double previous = 1;
+		for (int threshold : THRESHOLDS) {
+			double rate = report.getTruncationRate(threshold);
+			Assert.assertTrue(rate <= previous, "The truncations should drop as max_expansions grows");
+			previous = rate;
+		}
+		Assert.assertEquals(report.getTruncationRate(1), 1.0);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		report.print(new PrintStream(out, true, "UTF-8"), 3);
+		String printed = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		Assert.assertTrue(printed.contains("Costliest greek words"), printed);
+		Assert.assertEquals(report.costliestWords(10).size(), 5);
+	}
+
+	@Test
+	public void testMostFrequentWordsMakeADictionary() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder().maxExpansions(10).build();
+		GreeklishCorpusProfiler.Report report = GreeklishCorpusProfiler.profile(corpus, options, THRESHOLDS, pool);
+		Path path = directory.resolve("greeklish.dict");
+		Assert.assertEquals(GreeklishDictionaryBuilder.build(report.mostFrequentWords(3), options, path), 3);
+
+		try (GreeklishDictionary.Registry dictionaries = new GreeklishDictionary.Registry()) {
+			GreeklishDictionary.Reader reader = dictionaries.get(path).reader();
+			Assert.assertTrue(reader.lookup("αυτοκινητα".toCharArray(), 10, new GreeklishTokens()));
+		}
+	}
+}
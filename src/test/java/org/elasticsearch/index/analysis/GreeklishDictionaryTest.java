@@ -0,0 +1,151 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishDictionaryTest {
+
+	private static final int MAX_EXPANSIONS = 10;
+
+	/**
+	 * the vocabulary of the dictionary, not normalized.
+	 */
+	private static final String[] vocabulary = { "Αυτοκίνητο", "ομπρελα",
+			"ξεσκέπαστος", "mobile", "αυριο64" };
+
+	private Path directory;
+
+	private GreeklishDictionary.Registry dictionaries;
+
+	private GreeklishDictionary dictionary;
+
+	@BeforeClass
+	public void buildDictionary() throws IOException {
+		directory = Files.createTempDirectory("greeklish");
+		Path path = directory.resolve("greeklish.dict");
+		long words = GreeklishDictionaryBuilder.build(Arrays.asList(vocabulary),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).build(), path);
+		Assert.assertEquals(words, 3, "Only the greek words should be in the dictionary");
+
+		dictionaries = new GreeklishDictionary.Registry();
+		dictionary = dictionaries.get(path);
+		Assert.assertSame(dictionaries.get(directory.resolve("./greeklish.dict")), dictionary,
+				"The dictionary of a file should be loaded once");
+	}
+
+	@AfterClass
+	public void closeDictionary() throws IOException {
+		dictionaries.close();
+		IOUtils.rm(directory);
+	}
+
+	@Test
+	public void testDictionaryWordsAreTheConvertedWords() {
+		GreeklishConverter converter = new GreeklishConverter(MAX_EXPANSIONS, true);
+		GreeklishDictionary.Reader reader = dictionary.reader();
+
+		for (String greekWord : new String[] { "αυτοκινητο", "ομπρελα", "ξεσκεπαστοσ" }) {
+			GreeklishTokens converted = new GreeklishTokens();
+			converter.convert(greekWord.toCharArray(), greekWord.length(), converted);
+
+			GreeklishTokens found = new GreeklishTokens();
+			Assert.assertTrue(reader.lookup(greekWord.toCharArray(), greekWord.length(), found),
+					"The word should be in the dictionary: " + greekWord);
+			Assert.assertEquals(found.toStrings(), converted.toStrings());
+		}
+
+		for (String missingWord : new String[] { "αυτοκινητα", "αυτοκινη", "ομπρελαα", "mobile" }) {
+			GreeklishTokens found = new GreeklishTokens();
+			Assert.assertFalse(reader.lookup(missingWord.toCharArray(), missingWord.length(), found),
+					"The word should not be in the dictionary: " + missingWord);
+			Assert.assertTrue(found.isEmpty());
+		}
+	}
+
+	@Test
+	public void testConverterFallsBackToTheRules() {
+		GreeklishConverter converter = new GreeklishConverter(GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.dictionary(dictionary)
+				.build());
+		GreeklishConverter rules = new GreeklishConverter(MAX_EXPANSIONS, true);
+
+		for (String greekWord : new String[] { "ομπρελα", "καρεκλα" }) {
+			GreeklishTokens converted = new GreeklishTokens();
+			Assert.assertTrue(converter.convert(greekWord.toCharArray(), greekWord.length(), converted));
+
+			GreeklishTokens expected = new GreeklishTokens();
+			rules.convert(greekWord.toCharArray(), greekWord.length(), expected);
+			Assert.assertEquals(converted.toStrings(), expected.toStrings());
+		}
+	}
+
+	@Test
+	public void testDictionaryOfOtherOptionsIsRejected() {
+		GreeklishOptions.Builder[] otherOptions = {
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS + 1),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).maxTokensPerTerm(5),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).generateGreekVariants(false),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).weights(GreeklishWeights.DEFAULT),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS)
+						.lexicon(GreeklishLexicon.build(Arrays.asList("ομπρελα"))) };
+		for (GreeklishOptions.Builder options : otherOptions) {
+			try {
+				options.dictionary(dictionary).build();
+				Assert.fail("A dictionary of other options should be rejected");
+			} catch (IllegalArgumentException e) {
+				Assert.assertTrue(e.getMessage().contains("max_expansions=" + MAX_EXPANSIONS + ",max_tokens_per_term="
+						+ Integer.MAX_VALUE + ",greek_variants=true"), e.getMessage());
+			}
+		}
+
+		// the options that do not change the words of the dictionary
+		GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.maxGeneratedPerField(5)
+				.normalizeGreek(true)
+				.dictionary(dictionary)
+				.build();
+	}
+
+	@Test
+	public void testFilesOutsideTheConfigDirectoryAreRejected() throws IOException {
+		Path config = Files.createDirectory(directory.resolve("config"));
+		Environment env = new Environment(Settings.builder().put("path.home", directory).build(), config);
+		GreeklishDictionaryBuilder.build(Arrays.asList(vocabulary),
+				GreeklishOptions.builder().maxExpansions(MAX_EXPANSIONS).build(), config.resolve("greeklish.dict"));
+
+		try (GreeklishDictionary.Registry dictionaries = new GreeklishDictionary.Registry()) {
+			Settings settings = Settings.builder()
+					.put("max_expansions", MAX_EXPANSIONS)
+					.put("expansion_dictionary_path", "./greeklish.dict")
+					.build();
+			Assert.assertNotNull(GreeklishTokenFilterFactory.parseOptions(env, settings, dictionaries,
+					new GreeklishLexicon.Registry()).build().getDictionary());
+
+			String[][] outside = { { "expansion_dictionary_path", "../greeklish.dict" },
+					{ "expansion_dictionary_path", directory.resolve("greeklish.dict").toString() },
+					{ "greek_lexicon_path", "lexicon/../../lexicon.txt" },
+					{ "conversion_rules_path", "/etc/passwd" } };
+			for (String[] setting : outside) {
+				try {
+					GreeklishTokenFilterFactory.parseOptions(env, Settings.builder().put(setting[0], setting[1])
+							.build(), dictionaries, new GreeklishLexicon.Registry());
+					Assert.fail("A file outside the config directory should be rejected: " + setting[1]);
+				} catch (IllegalArgumentException e) {
+					Assert.assertTrue(e.getMessage().contains(setting[0]), e.getMessage());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishExplanationTest {
+
+	@Test
+	public void testStagesOfAGreekWord() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder().maxExpansions(5).build();
+		GreeklishExplanation explanation = GreeklishExplanation.explain("Αυτοκίνητο", options);
+
+		Assert.assertEquals(explanation.getGreekWord(), "αυτοκινητο");
+		Assert.assertEquals(explanation.getSuffix(), "ο");
+		Assert.assertEquals(explanation.getGreekVariants(),
+				new GreekReverseStemmer().generateGreekVariants("αυτοκινητο"));
+
+		GreeklishExplanation.Variant word = explanation.getVariants().get(0);
+		Assert.assertEquals(word.getUnits(), Arrays.asList("αυ", "τ", "ο", "κ", "ι", "ν", "η", "τ", "ο"));
+		// 4 conversions of αυ and 2 of η
+		Assert.assertEquals(word.getPossibleExpansions(), 8L);
+		Assert.assertEquals(word.getExpansions().size(), 5);
+		Assert.assertTrue(word.isTruncated());
+
+		// the tokens are the ones of the converter, without duplicates
+		GreeklishTokens tokens = new GreeklishTokens();
+		new GreeklishConverter(options).convert("αυτοκινητο".toCharArray(), 10, tokens);
+		Assert.assertEquals(explanation.getTokens().size(), tokens.size());
+		Assert.assertEquals(new HashSet<String>(explanation.getTokens()).size(), tokens.size());
+
+		String json = toJson(explanation);
+		Assert.assertTrue(json.contains("\"suffix\":\"ο\""), json);
+		Assert.assertTrue(json.contains("\"truncated\":true"), json);
+	}
+
+	@Test
+	public void testOtherTextIsNotExpanded() throws IOException {
+		GreeklishExplanation explanation = GreeklishExplanation.explain("iphone",
+				GreeklishOptions.builder().build());
+		Assert.assertNull(explanation.getGreekWord());
+		Assert.assertTrue(explanation.getTokens().isEmpty());
+		Assert.assertTrue(toJson(explanation).contains("\"greek\":false"));
+	}
+
+	@Test
+	public void testCanonicalKey() throws IOException {
+		GreeklishOptions options = GreeklishOptions.builder().mode(GreeklishOptions.Mode.CANONICAL).build();
+		Set<String> keys = new HashSet<String>();
+		for (String text : new String[] { "μπουφάν", "mpoufan", "bufan" }) {
+			keys.add(GreeklishExplanation.explain(text, options).getKey());
+		}
+		Assert.assertEquals(keys.size(), 1, keys.toString());
+	}
+
+	private static String toJson(GreeklishExplanation explanation) throws IOException {
+		XContentBuilder builder = XContentFactory.jsonBuilder();
+		explanation.toXContent(builder, ToXContent.EMPTY_PARAMS);
+		return Strings.toString(builder);
+	}
+}
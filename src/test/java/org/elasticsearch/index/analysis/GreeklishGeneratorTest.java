@@ -1,6 +1,9 @@
 package org.elasticsearch.index.analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
@@ -82,6 +85,120 @@ public class GreeklishGeneratorTest {
 
 	}
 
+	@Test
+	public void testDigraphSubstitution() {
+		String[][] substitutions = {
+				{ "μπαινει", "ΜΑνΕ" }, { "αυγγκ", "ΒΓκ" },
+				{ "ευκολοι", "ΦκολΟ" }, { "ντουλαπα", "ΝΥλαπα" } };
+
+		for (String[] substitution : substitutions) {
+			char[] word = substitution[0].toCharArray();
+			int length = GreeklishGenerator.substituteDigraphs(word, word.length);
+
+			Assert.assertEquals(new String(word, 0, length), substitution[1],
+					"The digraphs should be replaced from left to right");
+		}
+	}
+
+	@Test
+	public void testSharedStemIsExpandedLikeEachWord() {
+		List<List<String>> variants = new ArrayList<List<String>>();
+		// the "ου" and "οι" digraphs span the stem and the suffix
+		variants.add(Arrays.asList("καλο", "καλου", "καλοι", "καλη", "καλ"));
+		variants.add(new GreekReverseStemmer().generateGreekVariants("αυτοκινητα"));
+		variants.add(new GreekReverseStemmer().generateGreekVariants("φωτογραφικη"));
+
+		for (List<String> words : variants) {
+			for (int maxExpansions : new int[] { 1, 3, 10, 100 }) {
+				for (int maxTokens : new int[] { 1, 4, 12, 50, Integer.MAX_VALUE }) {
+					GreeklishTokens shared = new GreeklishTokens();
+					GreeklishGenerator generator = new GreeklishGenerator(maxExpansions);
+					generator.generateGreeklishWords(words, shared, maxTokens);
+
+					// each word alone, at the limit that it gets from the budget
+					GreeklishTokens expected = new GreeklishTokens();
+					long truncations = 0;
+					int remaining = maxTokens;
+					for (int word = 0; word < words.size() && remaining > 0; word++) {
+						int limit = Math.min(maxExpansions, Math.max(1, remaining - (words.size() - word - 1)));
+						GreeklishGenerator alone = new GreeklishGenerator(limit);
+						int size = expected.size();
+						alone.generateGreeklishWords(Collections.singletonList(words.get(word)), expected);
+						remaining -= expected.size() - size;
+						truncations += alone.getTruncations();
+					}
+
+					Assert.assertEquals(shared.toStrings(), expected.toStrings(), words + " " + maxExpansions
+							+ "/" + maxTokens);
+					Assert.assertEquals(generator.getTruncations(), truncations);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testWeightedExpansionsKeepTheMostProbableWords() {
+		List<String> word = Collections.singletonList("φυτο");
+
+		// breadth first, the rare "ph" survives and "fito" is dropped
+		greeklishWords = new GreeklishGenerator(3).generateGreeklishWords(word);
+		populateConvertedStringsList();
+		Assert.assertEquals(convertedGreeklishStrings, Arrays.asList("fyto", "phyto", "futo"));
+
+		convertedGreeklishStrings.clear();
+		greeklishWords = new GreeklishGenerator(3, GreeklishWeights.DEFAULT).generateGreeklishWords(word);
+		populateConvertedStringsList();
+		Assert.assertEquals(convertedGreeklishStrings, Arrays.asList("fyto", "futo", "fito"),
+				"The most probable words should be generated, the most probable first");
+	}
+
+	@Test
+	public void testWeightedExpansionsAreTheTopOfAllTheExpansions() {
+		GreeklishGenerator all = new GreeklishGenerator(Integer.MAX_VALUE, GreeklishWeights.DEFAULT);
+		GreeklishGenerator top = new GreeklishGenerator(MAX_EXPANSIONS, GreeklishWeights.DEFAULT);
+
+		for (String greekWord : greekWords) {
+			List<String> word = Collections.singletonList(greekWord);
+			greeklishWords = all.generateGreeklishWords(word);
+			populateConvertedStringsList();
+			List<String> allWords = new ArrayList<String>(convertedGreeklishStrings);
+
+			convertedGreeklishStrings.clear();
+			greeklishWords = new GreeklishGenerator(Integer.MAX_VALUE).generateGreeklishWords(word);
+			populateConvertedStringsList();
+			Assert.assertEquals(new HashSet<String>(allWords), new HashSet<String>(convertedGreeklishStrings),
+					"Without a limit the weighted expansions should be all the expansions");
+
+			convertedGreeklishStrings.clear();
+			greeklishWords = top.generateGreeklishWords(word);
+			populateConvertedStringsList();
+			Assert.assertEquals(convertedGreeklishStrings, allWords.subList(0, Math.min(MAX_EXPANSIONS, allWords.size())));
+			convertedGreeklishStrings.clear();
+		}
+	}
+
+	@Test
+	public void testExpansionWeightRules() {
+		GreeklishWeights weights = GreeklishWeights.parse(Arrays.asList(
+				"# prefer ph", "φ ph:9 f:1", "ου u:1 ou:0"));
+		greeklishWords = new GreeklishGenerator(2, weights)
+				.generateGreeklishWords(Collections.singletonList("φουστα"));
+		populateConvertedStringsList();
+
+		Assert.assertEquals(convertedGreeklishStrings, Arrays.asList("phusta", "fusta"));
+
+		String[] invalidRules = { "φ", "φ f", "φ f:x", "φ f:-1", "φ f:0", "ά a:1", "φα fa:1",
+				"φ F:1", "φ φ:1", "φ f1:1", "φ :1" };
+		for (String invalidRule : invalidRules) {
+			try {
+				GreeklishWeights.parse(Collections.singletonList(invalidRule));
+				Assert.fail("The rule should be rejected: " + invalidRule);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
 	private final void populateConvertedStringsList() {
 		for (StringBuilder word : greeklishWords) {
 			convertedGreeklishStrings.add(word.toString());
@@ -0,0 +1,61 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishOptionsTest {
+
+	@Test
+	public void testIndicesWithTheSameSettingsShareTheirOptions() {
+		GreeklishOptions.Registry registry = new GreeklishOptions.Registry();
+		GreeklishOptions first = null;
+		for (int day = 1; day <= 30; day++) {
+			GreeklishOptions options = registry.intern(parse(20));
+			if (first == null) {
+				first = options;
+			}
+			Assert.assertSame(options, first);
+		}
+		Assert.assertEquals(registry.size(), 1);
+
+		GreeklishOptions other = registry.intern(parse(5));
+		Assert.assertNotSame(other, first);
+		Assert.assertEquals(registry.size(), 2);
+
+		// the stats belong to each filter, the rest is shared
+		GreeklishStats stats = new GreeklishStats();
+		GreeklishOptions withStats = first.withStats(stats);
+		Assert.assertSame(withStats.getStats(), stats);
+		Assert.assertSame(withStats.getRules(), first.getRules());
+	}
+
+	@Test
+	public void testOptionsAreDroppedWithTheirLastFilter() throws InterruptedException {
+		GreeklishOptions.Registry registry = new GreeklishOptions.Registry();
+		// a filter holds its options with its stats
+		GreeklishOptions filter = registry.intern(parse(20)).withStats(new GreeklishStats());
+		// e.g. the factory of a validated template, which is never closed
+		registry.intern(parse(5));
+		Assert.assertEquals(registry.size(), 2);
+
+		for (int i = 0; i < 100 && registry.size() > 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(registry.size(), 1);
+		Assert.assertSame(registry.intern(parse(20)).getRules(), filter.getRules(),
+				"The options of a filter should stay interned");
+	}
+
+	/**
+	 * @return options with rules that are parsed again, as each index would
+	 */
+	private static GreeklishOptions parse(int maxExpansions) {
+		return GreeklishOptions.builder()
+				.rules(GreeklishRules.parse(null, Arrays.asList("τσ => ts, tz")))
+				.maxExpansions(maxExpansions)
+				.build();
+	}
+}
@@ -1,6 +1,7 @@
 package org.elasticsearch.index.analysis;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.testng.annotations.BeforeMethod;
@@ -75,4 +76,42 @@ public class GreeklishReverseStemmerTest {
 			Assert.assertTrue(generatedGreekVariants.size() == 1, "The reverse stemmer should not produce more results");
 		}
 	}
+
+	@Test
+	public void testLongestSuffixWins() {
+		generatedGreekVariants = reverseStemmer.generateGreekVariants("ασυρματων");
+
+		Assert.assertEquals(generatedGreekVariants,
+				Arrays.asList("ασυρματων", "ασυρμα", "ασυρματα", "ασυρματοσ"),
+				"The variants of the longest matching suffix should be generated in order");
+	}
+
+	@Test
+	public void testVariantsThatAreNotInTheLexiconAreDropped() {
+		GreeklishLexicon lexicon = GreeklishLexicon.build(Arrays.asList(
+				"Ασύρματα", "ασύρματος", "wifi"));
+		Assert.assertEquals(lexicon.size(), 2L);
+
+		generatedGreekVariants = new GreekReverseStemmer(GreeklishRules.DEFAULT, lexicon)
+				.generateGreekVariants("ασυρματων");
+
+		// the word itself is kept even if it is not in the lexicon
+		Assert.assertEquals(generatedGreekVariants,
+				Arrays.asList("ασυρματων", "ασυρματα", "ασυρματοσ"));
+	}
+
+	@Test
+	public void testLexiconReducesTheGreeklishWords() {
+		GreeklishLexicon lexicon = GreeklishLexicon.build(Arrays.asList("ποδηλατο", "ποδηλατα"));
+		GreeklishTokens gated = new GreeklishTokens();
+		new GreeklishConverter(GreeklishOptions.builder().lexicon(lexicon).build())
+				.convert("ποδηλατου".toCharArray(), 9, gated);
+		GreeklishTokens all = new GreeklishTokens();
+		new GreeklishConverter(GreeklishOptions.builder().build())
+				.convert("ποδηλατου".toCharArray(), 9, all);
+
+		Assert.assertTrue(gated.size() < all.size(), gated.size() + " >= " + all.size());
+		Assert.assertTrue(gated.toStrings().contains("podilata"), gated.toStrings().toString());
+		Assert.assertFalse(gated.toStrings().contains("podilaton"), gated.toStrings().toString());
+	}
 }
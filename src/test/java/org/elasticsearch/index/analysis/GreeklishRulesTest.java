@@ -0,0 +1,91 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishRulesTest {
+
+	@Test
+	public void testBuiltInRules() {
+		Assert.assertSame(GreeklishRules.parse(null, null), GreeklishRules.DEFAULT);
+		Assert.assertEquals(GreeklishRules.parse(Collections.<String>emptyList(), Collections.<String>emptyList()),
+				GreeklishRules.DEFAULT);
+	}
+
+	@Test
+	public void testConversionRules() {
+		GreeklishRules rules = GreeklishRules.parse(null, Arrays.asList(
+				"# no ph", "φ => f", "τσ => ts, tz", "μπ =>"));
+
+		Assert.assertEquals(generate("φουστα", rules), Arrays.asList("fousta", "foysta", "fusta"));
+		Assert.assertEquals(generate("τσαντα", rules), Arrays.asList("tsanta", "tzanta", "tsada", "tzada"));
+		// μπ is not a digraph any more
+		Assert.assertEquals(generate("μπαλα", rules), Arrays.asList("mpala"));
+		// the rest of the rules are the built-in ones
+		Assert.assertEquals(generate("γκαζι", rules), generate("γκαζι", GreeklishRules.DEFAULT));
+		Assert.assertNotEquals(rules, GreeklishRules.DEFAULT);
+		Assert.assertEquals(rules, GreeklishRules.parse(null, Arrays.asList("φ => f", "τσ => ts, tz", "μπ =>")));
+	}
+
+	@Test
+	public void testWeightsOfConversionRules() {
+		GreeklishRules rules = GreeklishRules.parse(null, Arrays.asList("τσ => ts, tz"));
+		GreeklishWeights weights = GreeklishWeights.parse(Arrays.asList("τσ tz:3 ts:1"), rules);
+		List<StringBuilder> words = new GreeklishGenerator(1, weights, rules)
+				.generateGreeklishWords(Collections.singletonList("τσαι"));
+		Assert.assertEquals(words.get(0).toString(), "tzai");
+
+		try {
+			GreeklishWeights.parse(Arrays.asList("τσ tz:3 ts:1"));
+			Assert.fail("τσ is not a built-in digraph");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSuffixRules() {
+		GreeklishRules rules = GreeklishRules.parse(Arrays.asList("ο => οι", "ματα =>"), null);
+		GreekReverseStemmer reverseStemmer = new GreekReverseStemmer(rules);
+
+		Assert.assertEquals(reverseStemmer.generateGreekVariants("αυτοκινητο"),
+				Arrays.asList("αυτοκινητο", "αυτοκινητοι"));
+		// the shorter suffix α matches instead of ματα
+		List<String> variants = reverseStemmer.generateGreekVariants("ενδυματα");
+		Assert.assertFalse(variants.contains("ενδυμα"), variants.toString());
+		Assert.assertTrue(variants.contains("ενδυματο"), variants.toString());
+	}
+
+	@Test
+	public void testInvalidRules() {
+		String[][] invalidRules = { { "φ f" }, { "φαι => fa" }, { "φ => φ" }, { "φ =>" }, { "f => φ" } };
+		for (String[] invalidRule : invalidRules) {
+			try {
+				GreeklishRules.parse(null, Arrays.asList(invalidRule));
+				Assert.fail("The conversion rule should be rejected: " + invalidRule[0]);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			GreeklishRules.parse(Arrays.asList("οσ => os"), null);
+			Assert.fail("The suffix rule should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static List<String> generate(String greekWord, GreeklishRules rules) {
+		List<String> words = new ArrayList<String>();
+		for (StringBuilder word : new GreeklishGenerator(Integer.MAX_VALUE, null, rules)
+				.generateGreeklishWords(Collections.singletonList(greekWord))) {
+			words.add(word.toString());
+		}
+		return words;
+	}
+}
@@ -0,0 +1,105 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishStatsTest {
+
+	@Test
+	public void testFilterCountsAreAddedAtTheEndOfTheStream() throws IOException {
+		GreeklishStats.Registry registry = new GreeklishStats.Registry();
+		GreeklishStats stats = registry.get("products", "greeklish");
+		GreeklishOptions options = GreeklishOptions.builder()
+				.maxExpansions(5)
+				.stats(stats)
+				.build();
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("κλιματισμοσ iphone αυτοκινητο 64gb"));
+		TokenStream stream = new GreeklishTokenFilter(tokenizer, options);
+		int emitted = 0;
+		stream.reset();
+		while (stream.incrementToken()) {
+			emitted++;
+		}
+		Assert.assertEquals(stats.getTokensInspected(), 0L, "The counts should be added at the end");
+		stream.end();
+		stream.close();
+
+		Assert.assertEquals(stats.getTokensInspected(), 4L);
+		Assert.assertEquals(stats.getGreekTokens(), 2L);
+		Assert.assertEquals(stats.getGreeklishTokens(), emitted - 4L);
+		Assert.assertTrue(stats.getGreekVariants() >= 2L);
+		// each variant is cut at max_expansions
+		Assert.assertTrue(stats.getTruncations() >= 2L);
+		Assert.assertTrue(stats.getTruncations() <= stats.getGreekVariants());
+		Assert.assertTrue(stats.getConvertNanos() > 0L);
+
+		Assert.assertSame(registry.get("products", "greeklish"), stats);
+		Assert.assertEquals(registry.total().getTokensInspected(), 4L);
+	}
+
+	@Test
+	public void testRegistryReportsTotalsAndFilters() throws IOException {
+		GreeklishStats.Registry registry = new GreeklishStats.Registry();
+		GreeklishStats.Counts counts = new GreeklishStats.Counts();
+		counts.tokensInspected = 3;
+		registry.get("products", "greeklish").add(counts);
+		counts.tokensInspected = 2;
+		registry.get("shops", "greeklish").add(counts);
+		Assert.assertEquals(counts.tokensInspected, 0L, "The counts should be reset");
+
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		registry.toXContent(builder, null);
+		String json = Strings.toString(builder.endObject());
+		Assert.assertTrue(json.contains("\"total\":{\"tokens_inspected\":5"), json);
+		Assert.assertTrue(json.contains("\"products\":{\"greeklish\":{\"tokens_inspected\":3"), json);
+		Assert.assertTrue(json.contains("\"shops\":{\"greeklish\":{\"tokens_inspected\":2"), json);
+
+		// the counts of a removed index stay in the total
+		registry.remove("shops");
+		builder = XContentFactory.jsonBuilder().startObject();
+		registry.toXContent(builder, null);
+		json = Strings.toString(builder.endObject());
+		Assert.assertTrue(json.contains("\"total\":{\"tokens_inspected\":5"), json);
+		Assert.assertFalse(json.contains("\"shops\""), json);
+	}
+
+	@Test
+	public void testRegistryIsSentToAnotherNode() throws IOException {
+		GreeklishStats.Registry registry = new GreeklishStats.Registry();
+		GreeklishStats.Counts counts = new GreeklishStats.Counts();
+		counts.tokensInspected = 3;
+		counts.convertNanos = 1000;
+		registry.get("products", "greeklish").add(counts);
+		counts.tokensInspected = 2;
+		registry.get("products", "autocomplete").add(counts);
+		counts.greekTokens = 4;
+		registry.get("shops", "greeklish").add(counts);
+		registry.remove("shops");
+
+		BytesStreamOutput out = new BytesStreamOutput();
+		registry.writeTo(out);
+		GreeklishStats.Registry read = new GreeklishStats.Registry(out.bytes().streamInput());
+
+		Assert.assertEquals(toJson(read), toJson(registry));
+		Assert.assertEquals(read.total().getGreekTokens(), 4L, "The removed indices should be sent too");
+		Assert.assertEquals(read.get("products", "autocomplete").getTokensInspected(), 2L);
+	}
+
+	private static String toJson(GreeklishStats.Registry registry) throws IOException {
+		XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+		registry.toXContent(builder, null);
+		return Strings.toString(builder.endObject());
+	}
+}
@@ -0,0 +1,190 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.miscellaneous.SetKeywordMarkerFilter;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishTokenFilterTest {
+
+	private static final int MAX_EXPANSIONS = 20;
+
+	private static final String TEXT = "ομπρελα για την παραλια 2m";
+
+	@Test
+	public void testTokensWithoutRestoringState() throws IOException {
+		List<String> restored = analyze(true);
+		List<String> notRestored = analyze(false);
+
+		Assert.assertTrue(restored.size() > 5, "Greeklish words should be generated");
+		Assert.assertEquals(notRestored, restored,
+				"The tokens should be the same whether the state is restored or not");
+	}
+
+	@Test
+	public void testDuplicateTokensAreNotEmitted() throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		// the variants κλιματισμη and κλιματισμοι are both "klimatismi"
+		tokenizer.setReader(new StringReader("κλιματισμοσ"));
+		GreeklishTokenFilter filter = new GreeklishTokenFilter(tokenizer, MAX_EXPANSIONS, true);
+		CharTermAttribute term = filter.addAttribute(CharTermAttribute.class);
+
+		Set<String> tokens = new HashSet<String>();
+		filter.reset();
+		while (filter.incrementToken()) {
+			Assert.assertTrue(tokens.add(term.toString()), "Duplicate token: " + term);
+		}
+		filter.end();
+		filter.close();
+
+		Assert.assertTrue(tokens.contains("klimatismi"));
+		Assert.assertTrue(filter.getRemovedDuplicates() > 0, "The duplicates should be counted");
+	}
+
+	@Test
+	public void testMemoryOfAReusedStreamStaysFlat() throws IOException {
+		StringBuilder longWord = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			longWord.append("αυτοκινητο");
+		}
+		StringBuilder document = new StringBuilder(longWord);
+		for (int i = 0; i < 5000; i++) {
+			document.append(' ').append(TEXT);
+		}
+
+		for (boolean generateGreekVariants : new boolean[] { true, false }) {
+			Tokenizer tokenizer = new WhitespaceTokenizer();
+			GreeklishTokenFilter filter = new GreeklishTokenFilter(tokenizer, MAX_EXPANSIONS, generateGreekVariants);
+			int textTokens = countTokens(filter, tokenizer, TEXT);
+			int longWordTokens = countTokens(filter, tokenizer, longWord.toString());
+
+			long[] ramBytesUsed = new long[3];
+			for (int i = 0; i < ramBytesUsed.length; i++) {
+				Assert.assertEquals(countTokens(filter, tokenizer, document.toString()),
+						longWordTokens + 5000 * textTokens);
+				ramBytesUsed[i] = filter.ramBytesUsed();
+			}
+			Assert.assertEquals(ramBytesUsed[1], ramBytesUsed[0]);
+			Assert.assertEquals(ramBytesUsed[2], ramBytesUsed[0]);
+			// the buffers that the long word needed are not kept
+			Assert.assertTrue(ramBytesUsed[0] < 2 * longWord.length() * MAX_EXPANSIONS,
+					"Retained " + ramBytesUsed[0] + " bytes");
+		}
+	}
+
+	@Test
+	public void testPendingTokensAreDroppedOnReset() throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		GreeklishTokenFilter filter = new GreeklishTokenFilter(tokenizer, MAX_EXPANSIONS, true);
+		CharTermAttribute term = filter.addAttribute(CharTermAttribute.class);
+
+		tokenizer.setReader(new StringReader("ομπρελα"));
+		filter.reset();
+		Assert.assertTrue(filter.incrementToken());
+		// the stream is abandoned with pending greeklish tokens
+		filter.close();
+
+		tokenizer.setReader(new StringReader("2m"));
+		filter.reset();
+		Assert.assertTrue(filter.incrementToken());
+		Assert.assertEquals(term.toString(), "2m");
+		Assert.assertFalse(filter.incrementToken());
+		filter.end();
+		filter.close();
+	}
+
+	@Test
+	public void testBudgetOfTheField() throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("αυτοκινητο ομπρελα ποδηλατα παραλια ξεσκεπαστοσ"));
+		GreeklishTokenFilter filter = new GreeklishTokenFilter(tokenizer, GreeklishOptions.builder()
+				.maxExpansions(MAX_EXPANSIONS)
+				.maxGeneratedPerField(15)
+				.build());
+		CharTermAttribute term = filter.addAttribute(CharTermAttribute.class);
+		TypeAttribute type = filter.addAttribute(TypeAttribute.class);
+
+		List<Integer> generated = new ArrayList<Integer>();
+		List<String> last = new ArrayList<String>();
+		filter.reset();
+		while (filter.incrementToken()) {
+			if (GreeklishTokenFilter.TOKEN_TYPE.equals(type.type())) {
+				generated.set(generated.size() - 1, generated.get(generated.size() - 1) + 1);
+				last.add(term.toString());
+			} else {
+				generated.add(0);
+				last.clear();
+			}
+		}
+		filter.end();
+		filter.close();
+
+		int total = 0;
+		for (int tokens : generated) {
+			Assert.assertTrue(tokens >= 1, generated.toString());
+			total += tokens;
+		}
+		// the tokens after the budget is spent get one spelling each
+		Assert.assertTrue(total <= 15 + generated.size() - 1, generated.toString());
+		// the budget is spent before the last token, which gets its most
+		// common spelling
+		Assert.assertEquals(last, Collections.singletonList("kseskepastos"));
+	}
+
+	private static int countTokens(TokenStream stream, Tokenizer tokenizer, String text) throws IOException {
+		tokenizer.setReader(new StringReader(text));
+		int tokens = 0;
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens++;
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+
+	private List<String> analyze(boolean restoreState) throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(TEXT));
+		CharArraySet keywords = new CharArraySet(1, false);
+		keywords.add("παραλια");
+		TokenStream stream = new GreeklishTokenFilter(new SetKeywordMarkerFilter(tokenizer, keywords),
+				GreeklishOptions.builder()
+						.maxExpansions(MAX_EXPANSIONS)
+						.restoreState(restoreState)
+						.build());
+
+		CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+		OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+		PositionIncrementAttribute posInc = stream.addAttribute(PositionIncrementAttribute.class);
+		TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+		KeywordAttribute keyword = stream.addAttribute(KeywordAttribute.class);
+
+		List<String> tokens = new ArrayList<String>();
+		stream.reset();
+		while (stream.incrementToken()) {
+			tokens.add(term + "/" + offset.startOffset() + "-" + offset.endOffset()
+					+ "/" + posInc.getPositionIncrement() + "/" + type.type()
+					+ "/" + keyword.isKeyword());
+		}
+		stream.end();
+		stream.close();
+		return tokens;
+	}
+}
@@ -0,0 +1,114 @@
+package org.elasticsearch.index.query;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.test.IndexSettingsModule;
+import org.testng.annotations.Test;
+import org.testng.Assert;
+
+public class GreeklishQueryBuilderTest {
+
+	@Test
+	public void testFromXContent() throws IOException {
+		GreeklishQueryBuilder query = parse("{\"title.latin\": {\"value\": \"αυτοκίνητο\","
+				+ " \"greek_variants\": false, \"boost\": 2.0, \"_name\": \"cars\"}}");
+
+		Assert.assertEquals(query.fieldName(), "title.latin");
+		Assert.assertEquals(query.value(), "αυτοκίνητο");
+		Assert.assertFalse(query.greekVariants());
+		Assert.assertEquals(query.boost(), 2.0f);
+		Assert.assertEquals(query.queryName(), "cars");
+
+		GreeklishQueryBuilder shortQuery = parse("{\"title.latin\": \"αυτοκίνητο\"}");
+		Assert.assertEquals(shortQuery, new GreeklishQueryBuilder("title.latin", "αυτοκίνητο"));
+		Assert.assertTrue(shortQuery.greekVariants());
+	}
+
+	@Test
+	public void testXContentAndStreamRoundTrip() throws IOException {
+		GreeklishQueryBuilder query = new GreeklishQueryBuilder("title.latin", "ομπρέλα")
+				.greekVariants(false)
+				.boost(3.0f)
+				.queryName("umbrellas");
+
+		// the parser starts after the name of the query
+		String json = Strings.toString(query);
+		String inner = json.substring(json.indexOf(':') + 1, json.length() - 1);
+		Assert.assertEquals(parse(inner), query);
+
+		try (BytesStreamOutput out = new BytesStreamOutput()) {
+			query.writeTo(out);
+			try (StreamInput in = out.bytes().streamInput()) {
+				Assert.assertEquals(new GreeklishQueryBuilder(in), query);
+			}
+		}
+	}
+
+	@Test
+	public void testEqualsAndHashCode() {
+		GreeklishQueryBuilder query = new GreeklishQueryBuilder("title.latin", "ομπρέλα");
+		GreeklishQueryBuilder same = new GreeklishQueryBuilder("title.latin", "ομπρέλα");
+		Assert.assertEquals(same, query);
+		Assert.assertEquals(same.hashCode(), query.hashCode());
+
+		GreeklishQueryBuilder[] others = { new GreeklishQueryBuilder("title", "ομπρέλα"),
+				new GreeklishQueryBuilder("title.latin", "ομπρελα"),
+				new GreeklishQueryBuilder("title.latin", "ομπρέλα").greekVariants(false),
+				new GreeklishQueryBuilder("title.latin", "ομπρέλα").boost(2.0f),
+				new GreeklishQueryBuilder("title.latin", "ομπρέλα").queryName("umbrellas") };
+		for (GreeklishQueryBuilder other : others) {
+			Assert.assertNotEquals(other, query);
+			Assert.assertNotEquals(other.hashCode(), query.hashCode());
+		}
+	}
+
+	@Test
+	public void testValueThatCannotBeMatchedIsRejected() throws IOException {
+		QueryShardContext context = context();
+		try {
+			new GreeklishQueryBuilder("title.latin", "iphone").toQuery(context);
+			Assert.fail("A value that is not greek should be rejected");
+		} catch (QueryShardException e) {
+			Assert.assertTrue(e.getMessage().contains("requires a greek word, got [iphone]"), e.getMessage());
+		}
+
+		try {
+			new GreeklishQueryBuilder("title.latin", "αυτοκινητα").toQuery(context, 10);
+			Assert.fail("A too complex automaton should be rejected");
+		} catch (QueryShardException e) {
+			Assert.assertTrue(e.getMessage().contains("is too complex"), e.getMessage());
+		}
+	}
+
+	@Test(expectedExceptions = ParsingException.class)
+	public void testUnknownField() throws IOException {
+		parse("{\"title.latin\": {\"value\": \"ομπρελα\", \"max_expansions\": 20}}");
+	}
+
+	private static GreeklishQueryBuilder parse(String json) throws IOException {
+		try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY,
+				DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+			parser.nextToken();
+			return GreeklishQueryBuilder.fromXContent(parser);
+		}
+	}
+
+	/**
+	 * @return the context of a shard, which is enough for the queries that
+	 *         are rejected before their field is looked up
+	 */
+	private static QueryShardContext context() {
+		return new QueryShardContext(0, IndexSettingsModule.newIndexSettings("products", Settings.EMPTY), null,
+				null, null, null, null, null, NamedXContentRegistry.EMPTY, null, null, null, () -> 0L, null,
+				index -> true, () -> true);
+	}
+}